@@ -0,0 +1,40 @@
+package android.net;
+
+/**
+ * Stub implementation of android.net.Uri so that benchmarks run on a desktop
+ * JVM. The Android SDK jar only contains methods which throw exceptions.
+ */
+public final class Uri {
+
+  private final String uri;
+
+  private Uri(String uri) {
+    this.uri = uri;
+  }
+
+  public static Uri parse(String uri) {
+    return new Uri(uri);
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    if (this == object) {
+      return true;
+    } else if (object instanceof Uri) {
+      return uri.equals(((Uri) object).uri);
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    return uri.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return uri;
+  }
+
+}
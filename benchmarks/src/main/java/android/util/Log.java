@@ -0,0 +1,35 @@
+package android.util;
+
+/**
+ * Stub implementation of android.util.Log which discards all messages so that
+ * logging does not distort benchmark results.
+ */
+public final class Log {
+
+  private Log() {}
+
+  public static int d(String tag, String msg) {
+    return 0;
+  }
+
+  public static int i(String tag, String msg) {
+    return 0;
+  }
+
+  public static int w(String tag, String msg) {
+    return 0;
+  }
+
+  public static int w(String tag, String msg, Throwable tr) {
+    return 0;
+  }
+
+  public static int e(String tag, String msg) {
+    return 0;
+  }
+
+  public static int e(String tag, String msg, Throwable tr) {
+    return 0;
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the element name lookup of {@link RSSHandler}: a hash table as
+ * built for {@link RSSConfig#DISPATCH_HASH} against the {@link ElementTable}
+ * of {@link RSSConfig#DISPATCH_PERFECT_HASH}. The element names are those of
+ * a typical item, many of which are not supported.
+ *
+ * @author Mr Horn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+  private static final String[] SUPPORTED = { "title", "description", "content:encoded", "link",
+      "category", "pubDate", "media:thumbnail", "lastBuildDate", "ttl", "enclosure", "item" };
+
+  private static final String[] ITEM = { "item", "title", "link", "guid", "dc:creator", "pubDate",
+      "category", "category", "description", "comments", "atom:link", "source", "wfw:commentRss",
+      "slash:comments", "media:content", "media:thumbnail" };
+
+  /**
+   * {@code true} to copy the element names, as SAX parsers which do not
+   * intern names would do.
+   */
+  @Param({ "false", "true" })
+  public boolean copy;
+
+  private String[] names;
+  private Map<String, Integer> map;
+  private ElementTable table;
+
+  @Setup
+  public void setup() {
+    names = new String[ITEM.length];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = copy ? new String(ITEM[i].toCharArray()) : ITEM[i];
+    }
+
+    map = new HashMap<String, Integer>(16);
+    for (int i = 0; i < SUPPORTED.length; i++) {
+      map.put(SUPPORTED[i], Integer.valueOf(i));
+    }
+    table = new ElementTable(SUPPORTED);
+  }
+
+  @Benchmark
+  public int hash() {
+    int sum = 0;
+    for (String name : names) {
+      final Integer index = map.get(name);
+      if (index != null) {
+        sum += index.intValue();
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int perfectHash() {
+    int sum = 0;
+    for (String name : names) {
+      final int index = table.get(name);
+      if (index != ElementTable.NONE) {
+        sum += index;
+      }
+    }
+    return sum;
+  }
+
+}
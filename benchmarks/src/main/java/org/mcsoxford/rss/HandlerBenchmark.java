@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Measures the {@link RSSHandler} callbacks alone by replaying SAX events
+ * which have been recorded once, so that XML tokenizing is excluded.
+ *
+ * @author Mr Horn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerBenchmark {
+
+  @Param({ "10", "100", "10000" })
+  public int items;
+
+  @Param({ "false", "true" })
+  public boolean media;
+
+  @Param({ "false", "true" })
+  public boolean content;
+
+  /**
+   * {@link RSSConfig#DISPATCH_HASH} or {@link RSSConfig#DISPATCH_PERFECT_HASH}
+   */
+  @Param({ "0", "1" })
+  public int dispatch;
+
+  private Recorder events;
+  private RSSConfig config;
+
+  @Setup
+  public void setup() throws Exception {
+    config = new RSSConfig.Builder().dispatch(dispatch).build();
+    events = Recorder.record(SyntheticFeeds.feed(items, media, content));
+  }
+
+  @Benchmark
+  public RSSFeed replay() throws SAXException {
+    final RSSHandler handler = new RSSHandler(config);
+    events.replay(handler);
+    return handler.feed();
+  }
+
+  /**
+   * Records start element, character and end element events.
+   */
+  static final class Recorder extends DefaultHandler {
+
+    private static final byte START = 0;
+    private static final byte CHARACTERS = 1;
+    private static final byte END = 2;
+
+    private final List<Byte> types = new ArrayList<Byte>();
+    private final List<String> names = new ArrayList<String>();
+    private final List<Attributes> attributes = new ArrayList<Attributes>();
+    private final List<char[]> text = new ArrayList<char[]>();
+
+    /**
+     * Parses the feed with the same SAX features as {@link RSSParser}.
+     */
+    static Recorder record(byte[] feed) throws Exception {
+      final SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setFeature("http://xml.org/sax/features/namespaces", false);
+      factory.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+
+      final Recorder recorder = new Recorder();
+      final XMLReader reader = factory.newSAXParser().getXMLReader();
+      reader.setContentHandler(recorder);
+      reader.parse(new InputSource(new ByteArrayInputStream(feed)));
+      return recorder;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qname, Attributes atts) {
+      add(START, qname, new AttributesImpl(atts), null);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+      final char[] copy = new char[length];
+      System.arraycopy(ch, start, copy, 0, length);
+      add(CHARACTERS, null, null, copy);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qname) {
+      add(END, qname, null, null);
+    }
+
+    private void add(byte type, String name, Attributes atts, char[] chars) {
+      types.add(Byte.valueOf(type));
+      names.add(name);
+      attributes.add(atts);
+      text.add(chars);
+    }
+
+    void replay(RSSHandler handler) throws SAXException {
+      final int size = types.size();
+      for (int i = 0; i < size; i++) {
+        switch (types.get(i).byteValue()) {
+        case START:
+          handler.startElement(null, null, names.get(i), attributes.get(i));
+          break;
+        case CHARACTERS:
+          final char[] chars = text.get(i);
+          handler.characters(chars, 0, chars.length);
+          break;
+        default:
+          handler.endElement(null, null, names.get(i));
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long an {@link RSSLoader} takes to load a batch of feeds from
+ * the in-process {@link LocalFeedServer}. The server delay simulates slow
+ * origin servers, which is where concurrent loading pays off.
+ *
+ * @author Mr Horn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoaderBenchmark {
+
+  /**
+   * Loader under test: a single worker thread, eight worker threads, or eight
+   * concurrent tasks on an executor.
+   */
+  @Param({ "single", "workers", "executor" })
+  public String mode;
+
+  @Param({ "0", "20" })
+  public long delayMillis;
+
+  @Param({ "64" })
+  public int feeds;
+
+  private LocalFeedServer server;
+  private ExecutorService executor;
+  private RSSLoader loader;
+  private String[] uris;
+
+  @Setup
+  public void setup() throws IOException {
+    server = new LocalFeedServer(SyntheticFeeds.feed(20, true, false), delayMillis);
+
+    if ("single".equals(mode)) {
+      loader = RSSLoader.fifo();
+    } else if ("workers".equals(mode)) {
+      loader = RSSLoader.fifo(feeds, 8);
+    } else {
+      executor = Executors.newCachedThreadPool();
+      loader = RSSLoader.fifo(executor, 8);
+    }
+
+    uris = new String[feeds];
+    for (int i = 0; i < feeds; i++) {
+      uris[i] = server.uri("feed/" + i);
+    }
+  }
+
+  @TearDown
+  public void teardown() {
+    loader.stop();
+    if (executor != null) {
+      executor.shutdown();
+    }
+    server.stop();
+  }
+
+  @Benchmark
+  public int loadAll() throws InterruptedException, ExecutionException {
+    for (String uri : uris) {
+      loader.load(uri, RSSReader.CONFIG_ONLINE_ONLY);
+    }
+
+    int items = 0;
+    for (int i = 0; i < feeds; i++) {
+      final Future<RSSFeed> future = loader.poll(30, TimeUnit.SECONDS);
+      if (future == null) {
+        throw new IllegalStateException("Feed loading timed out");
+      }
+      items += future.get().getItems().size();
+    }
+    return items;
+  }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process HTTP server which answers every GET request with the same RSS
+ * feed. An optional delay simulates the latency of a remote origin server, and
+ * the feed can be sent gzip compressed to clients which accept it.
+ *
+ * @author Mr Horn
+ */
+final class LocalFeedServer implements HttpHandler {
+
+  private static final String ETAG = "\"synthetic\"";
+
+  static {
+    // Nagle's algorithm would delay the last segment of small responses such
+    // as gzipped feeds until the client's delayed ACK, i.e. by tens of ms
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final byte[] feed;
+  private final byte[] gzipped;
+  private final long delayMillis;
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * Starts a server on an ephemeral port of the loopback interface.
+   *
+   * @param feed response body
+   * @param delayMillis time to wait before each response
+   */
+  LocalFeedServer(byte[] feed, long delayMillis) throws IOException {
+    this(feed, delayMillis, false);
+  }
+
+  /**
+   * Starts a server on an ephemeral port of the loopback interface.
+   *
+   * @param feed response body
+   * @param delayMillis time to wait before each response
+   * @param gzip {@code true} to compress the response body if the request
+   *          accepts gzip
+   */
+  LocalFeedServer(byte[] feed, long delayMillis, boolean gzip) throws IOException {
+    this.feed = feed;
+    this.gzipped = gzip ? gzip(feed) : null;
+    this.delayMillis = delayMillis;
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+    this.executor = Executors.newCachedThreadPool();
+
+    server.createContext("/", this);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /**
+   * Returns the URI of a feed on this server. Each path is a distinct feed as
+   * far as caches are concerned.
+   */
+  String uri(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + path;
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (delayMillis > 0) {
+        Thread.sleep(delayMillis);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    try {
+      exchange.getResponseHeaders().add("ETag", ETAG);
+      if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        exchange.sendResponseHeaders(304, -1);
+        return;
+      }
+
+      exchange.getResponseHeaders().add("Content-Type", "application/rss+xml; charset=UTF-8");
+      final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+      byte[] content = feed;
+      if (gzipped != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+        exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        content = gzipped;
+      }
+      exchange.sendResponseHeaders(200, content.length);
+      final OutputStream body = exchange.getResponseBody();
+      body.write(content);
+      body.close();
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static byte[] gzip(byte[] bytes) throws IOException {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4);
+    final GZIPOutputStream out = new GZIPOutputStream(buffer);
+    out.write(bytes);
+    out.close();
+    return buffer.toByteArray();
+  }
+
+  void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+}
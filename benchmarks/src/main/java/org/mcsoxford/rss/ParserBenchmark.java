@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+/**
+ * Measures {@link RSSParser#parse(java.io.InputStream)} on in-memory feeds,
+ * including SAX tokenizing and the {@link RSSHandler} callbacks.
+ *
+ * @author Mr Horn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+  @Param({ "10", "100", "10000" })
+  public int items;
+
+  @Param({ "false", "true" })
+  public boolean media;
+
+  @Param({ "false", "true" })
+  public boolean content;
+
+  private byte[] feed;
+  private RSSConfig config;
+  private RSSParser parser;
+  private RSSParser headlines;
+  private RSSParseOptions firstItems;
+
+  @Setup
+  public void setup() {
+    feed = SyntheticFeeds.feed(items, media, content);
+    config = new RSSConfig();
+    parser = new RSSParser(config);
+    headlines = new RSSParser(new RSSConfig.Builder()
+        .fields(RSSConfig.FIELD_TITLE | RSSConfig.FIELD_LINK).build());
+    firstItems = new RSSParseOptions(10, null);
+  }
+
+  @Benchmark
+  public RSSFeed parse() {
+    return parser.parse(new ByteArrayInputStream(feed));
+  }
+
+  /**
+   * Baseline without the pool, which creates a SAXParserFactory and a
+   * SAXParser for every feed.
+   */
+  @Benchmark
+  public RSSFeed parseUnpooled() throws Exception {
+    final SAXParserFactory factory = SAXParserFactory.newInstance();
+    factory.setFeature("http://xml.org/sax/features/namespaces", false);
+    factory.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+    final SAXParser saxParser = factory.newSAXParser();
+
+    final RSSHandler handler = new RSSHandler(config);
+    final XMLReader reader = saxParser.getXMLReader();
+    reader.setContentHandler(handler);
+    reader.parse(new InputSource(new ByteArrayInputStream(feed)));
+    return handler.feed();
+  }
+
+  /**
+   * Skips all elements except titles and links.
+   */
+  @Benchmark
+  public RSSFeed parseHeadlines() {
+    return headlines.parse(new ByteArrayInputStream(feed));
+  }
+
+  /**
+   * Stops after the first ten items, as a client which polls a feed would.
+   */
+  @Benchmark
+  public RSSFeed parseFirstItems() {
+    return parser.parse(new ByteArrayInputStream(feed), firstItems);
+  }
+
+}
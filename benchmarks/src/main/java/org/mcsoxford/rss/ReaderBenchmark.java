@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a single {@link RSSReader#load(String, int)} against the in-process
+ * {@link LocalFeedServer}, online with and without a cache file, and from the
+ * cache file alone. The cache holds either the raw XML, gzipped XML or a binary
+ * snapshot, and the server can send the feed gzip compressed.
+ *
+ * @author Mr Horn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReaderBenchmark {
+
+  @Param({ "10", "100", "10000" })
+  public int items;
+
+  /**
+   * "none" for no cache files, "xml", "compressed" or "snapshot" for the cache
+   * format
+   */
+  @Param({ "none", "xml", "compressed", "snapshot" })
+  public String cache;
+
+  /**
+   * Whether the server sends the feed gzip compressed
+   */
+  @Param({ "false", "true" })
+  public boolean gzip;
+
+  private LocalFeedServer server;
+  private RSSReader reader;
+  private File cacheDir;
+
+  /* Keep a strong reference because RSSReader only holds a weak one */
+  private RSSReader.RSSReaderCallbacks callbacks;
+
+  @Setup
+  public void setup() throws IOException, RSSReaderException {
+    server = new LocalFeedServer(SyntheticFeeds.feed(items, true, false), 0, gzip);
+    reader = new RSSReader();
+    if ("snapshot".equals(cache)) {
+      reader.setCacheFormat(RSSReader.CACHE_SNAPSHOT);
+    } else if ("compressed".equals(cache)) {
+      reader.setCacheFormat(RSSReader.CACHE_XML | RSSReader.CACHE_COMPRESSED);
+    } else {
+      reader.setCacheFormat(RSSReader.CACHE_XML);
+    }
+
+    cacheDir = File.createTempFile("rss-benchmark", "");
+    cacheDir.delete();
+    cacheDir.mkdir();
+
+    callbacks = new RSSReader.RSSReaderCallbacks() {
+      @Override
+      public boolean onRequestNetworkState() {
+        return true;
+      }
+
+      @Override
+      public File onRequestCacheFile(String uri) {
+        return "none".equals(cache) ? null : new File(cacheDir, Integer.toHexString(uri.hashCode()));
+      }
+    };
+    reader.setCallbacks(callbacks);
+
+    // populate the cache file
+    reader.load(server.uri("feed"), RSSReader.CONFIG_ONLINE_ONLY);
+  }
+
+  @TearDown
+  public void teardown() {
+    reader.close();
+    server.stop();
+    for (File file : cacheDir.listFiles()) {
+      file.delete();
+    }
+    cacheDir.delete();
+  }
+
+  /**
+   * Loads the feed with an unconditional request. The URI changes so that no
+   * cache validators are sent.
+   */
+  @Benchmark
+  public RSSFeed online() throws RSSReaderException {
+    return reader.load(server.uri("feed?" + System.nanoTime()), RSSReader.CONFIG_ONLINE_ONLY);
+  }
+
+  /**
+   * Loads the feed from the cache file populated during setup, or nothing if
+   * the benchmark runs without cache files.
+   */
+  @Benchmark
+  public RSSFeed cached() throws RSSReaderException {
+    return reader.load(server.uri("feed"), RSSReader.CONFIG_CACHED_ONLY);
+  }
+
+}
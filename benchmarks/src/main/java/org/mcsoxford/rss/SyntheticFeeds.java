@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Generates deterministic RSS 2.0 documents of arbitrary size for benchmarks.
+ *
+ * @author Mr Horn
+ */
+final class SyntheticFeeds {
+
+  private static final String[] CATEGORIES = { "World", "Politics", "Business", "Science", "Sport" };
+
+  /* Hide constructor */
+  private SyntheticFeeds() {}
+
+  /**
+   * Returns a UTF-8 encoded RSS feed.
+   *
+   * @param items number of &lt;item&gt; elements
+   * @param media {@code true} to add two &lt;media:thumbnail&gt; elements and
+   *          an &lt;enclosure&gt; to each item
+   * @param content {@code true} to add a &lt;content:encoded&gt; element of
+   *          about 2 KB to each item
+   */
+  static byte[] feed(int items, boolean media, boolean content) {
+    final StringBuilder xml = new StringBuilder(512 + items * (content ? 2600 : 600));
+    xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    xml.append("<rss version=\"2.0\" xmlns:media=\"http://search.yahoo.com/mrss/\"");
+    xml.append(" xmlns:content=\"http://purl.org/rss/1.0/modules/content/\">\n");
+    xml.append("<channel>\n");
+    xml.append("<title>Synthetic Channel</title>\n");
+    xml.append("<link>http://example.com/</link>\n");
+    xml.append("<description>Generated feed with ").append(items).append(" items</description>\n");
+    xml.append("<language>en-gb</language>\n");
+    xml.append("<lastBuildDate>Sun, 07 Nov 2010 09:33:11 GMT</lastBuildDate>\n");
+    xml.append("<ttl>15</ttl>\n");
+
+    for (int i = 0; i < items; i++) {
+      final int day = 1 + i % 28;
+      xml.append("<item>\n");
+      xml.append("<title>Item number ").append(i).append(" of the synthetic feed</title>\n");
+      xml.append("<link>http://example.com/2010/11/").append(day).append("/item-").append(i).append("</link>\n");
+      xml.append("<guid isPermaLink=\"false\">urn:item:").append(i).append("</guid>\n");
+      xml.append("<pubDate>Sun, ").append(day < 10 ? "0" : "").append(day)
+          .append(" Nov 2010 08:22:14 GMT</pubDate>\n");
+      xml.append("<description>Summary of item ").append(i)
+          .append(" which is a few sentences long, as is usual for news feeds.</description>\n");
+      xml.append("<category>").append(CATEGORIES[i % CATEGORIES.length]).append("</category>\n");
+      xml.append("<category>").append(CATEGORIES[(i + 2) % CATEGORIES.length]).append("</category>\n");
+
+      if (media) {
+        xml.append("<media:thumbnail width=\"66\" height=\"49\" url=\"http://example.com/media/")
+            .append(i).append("/small.jpg\"/>\n");
+        xml.append("<media:thumbnail width=\"144\" height=\"81\" url=\"http://example.com/media/")
+            .append(i).append("/large.jpg\"/>\n");
+        xml.append("<enclosure url=\"http://example.com/media/").append(i)
+            .append("/episode.mp3\" length=\"12345678\" type=\"audio/mpeg\"/>\n");
+      }
+
+      if (content) {
+        xml.append("<content:encoded><![CDATA[");
+        for (int p = 0; p < 16; p++) {
+          xml.append("<p>Paragraph ").append(p).append(" of item ").append(i)
+              .append(" with <b>markup</b> and enough text to be realistic.</p>");
+        }
+        xml.append("]]></content:encoded>\n");
+      }
+
+      xml.append("</item>\n");
+    }
+
+    xml.append("</channel>\n</rss>\n");
+
+    try {
+      return xml.toString().getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Internal input stream which reads the remaining bytes of a buffer, e.g. of a
+ * memory-mapped cache file. Reads neither block nor issue system calls.
+ *
+ * @author Mr Horn
+ */
+final class ByteBufferInputStream extends InputStream {
+
+  /**
+   * Files of at least this size are memory-mapped rather than read.
+   */
+  static final long MAP_THRESHOLD = 64 * 1024;
+
+  private final ByteBuffer buffer;
+
+  ByteBufferInputStream(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Returns the contents of a file. Large files are memory-mapped, small ones
+   * are read with a single call because mapping costs more than copying them.
+   * The file is closed before this method returns, while a mapping remains
+   * valid until the buffer is garbage collected.
+   *
+   * @throws IOException if the file cannot be opened or read
+   */
+  static ByteBuffer read(File file) throws IOException {
+    final FileInputStream stream = new FileInputStream(file);
+    try {
+      final FileChannel channel = stream.getChannel();
+      final long size = channel.size();
+      if (size >= MAP_THRESHOLD) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      }
+
+      final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+        // read until the end of the file
+      }
+      buffer.flip();
+      return buffer;
+    } finally {
+      stream.close();
+    }
+  }
+
+  @Override
+  public int read() {
+    return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    } else if (!buffer.hasRemaining()) {
+      return -1;
+    }
+
+    final int n = Math.min(length, buffer.remaining());
+    buffer.get(bytes, offset, n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) {
+    final int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+    buffer.position(buffer.position() + skipped);
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return buffer.remaining();
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+    buffer.mark();
+  }
+
+  @Override
+  public synchronized void reset() {
+    buffer.reset();
+  }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+
+/**
+ * Internal HTTP cache validators of a cached RSS feed. The ETag and
+ * Last-Modified response headers are stored in a small file next to the cache
+ * file and sent back as If-None-Match and If-Modified-Since request headers.
+ *
+ * @author Mr Horn
+ */
+final class CacheValidators {
+
+  private static final String ETAG = "ETag";
+  private static final String LAST_MODIFIED = "Last-Modified";
+  private static final String IF_NONE_MATCH = "If-None-Match";
+  private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+  /**
+   * File name suffix of the validators which belong to a cache file.
+   */
+  private static final String SUFFIX = ".validators";
+
+  /** Never both {@code null} */
+  private final String etag;
+  private final String lastModified;
+
+  private CacheValidators(String etag, String lastModified) {
+    this.etag = etag;
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * Returns the validators of the HTTP response or {@code null} if it has
+   * neither an ETag nor a Last-Modified header.
+   */
+  static CacheValidators of(HttpResponse response) {
+    final String etag = value(response.getFirstHeader(ETAG));
+    final String lastModified = value(response.getFirstHeader(LAST_MODIFIED));
+    if (etag == null && lastModified == null) {
+      return null;
+    }
+
+    return new CacheValidators(etag, lastModified);
+  }
+
+  private static String value(Header header) {
+    return header == null ? null : header.getValue();
+  }
+
+  /**
+   * Returns the validators stored for the cache file or {@code null} if there
+   * are none, or if neither the cache file nor its snapshot exists.
+   */
+  static CacheValidators read(File cacheFile) {
+    final File file = file(cacheFile);
+    if (!file.exists() || !cacheFile.exists() && !Snapshots.file(cacheFile).exists()) {
+      return null;
+    }
+
+    final Properties properties = new Properties();
+    InputStream stream = null;
+    try {
+      stream = new FileInputStream(file);
+      properties.load(stream);
+    } catch (IOException e) {
+      return null;
+    } finally {
+      Resources.closeQuietly(stream);
+    }
+
+    final String etag = properties.getProperty(ETAG);
+    final String lastModified = properties.getProperty(LAST_MODIFIED);
+    if (etag == null && lastModified == null) {
+      return null;
+    }
+
+    return new CacheValidators(etag, lastModified);
+  }
+
+  /**
+   * Atomically stores the validators next to the cache file.
+   */
+  void write(File cacheFile) throws IOException {
+    final Properties properties = new Properties();
+    if (etag != null) {
+      properties.setProperty(ETAG, etag);
+    }
+    if (lastModified != null) {
+      properties.setProperty(LAST_MODIFIED, lastModified);
+    }
+
+    CacheWriter.write(file(cacheFile), new CacheWriter.Content() {
+      @Override
+      public void writeTo(OutputStream stream) throws IOException {
+        properties.store(stream, null);
+      }
+    });
+  }
+
+  /**
+   * Removes the validators of the cache file, if any.
+   */
+  static void delete(File cacheFile) {
+    file(cacheFile).delete();
+  }
+
+  /**
+   * Adds the conditional request headers to the HTTP request.
+   */
+  void addTo(HttpRequest request) {
+    if (etag != null) {
+      request.addHeader(IF_NONE_MATCH, etag);
+    }
+    if (lastModified != null) {
+      request.addHeader(IF_MODIFIED_SINCE, lastModified);
+    }
+  }
+
+  private static File file(File cacheFile) {
+    return new File(cacheFile.getParentFile(), cacheFile.getName() + SUFFIX);
+  }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Internal write-behind queue of cache files. The feed thread only hands over
+ * what is to be cached, and a background thread commits it. Every file is
+ * written to a temporary file which is synced and then renamed over the
+ * target, so that a crash leaves either the old or the new file but never a
+ * truncated one.
+ * <p>
+ * A cache file has at most one pending write. A newer write for the same cache
+ * file replaces the pending one, whose temporary file is discarded.
+ *
+ * @author Mr Horn
+ */
+final class CacheWriter implements Runnable {
+
+  /**
+   * Human-readable name of the thread which writes cache files
+   */
+  private static final String THREAD_NAME = "RSS feed cache writer";
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /**
+   * Pending writes in FIFO order by cache file, guarded by itself.
+   */
+  private final Map<File, Entry> pending = new LinkedHashMap<File, Entry>();
+
+  /**
+   * Cache file which is being written, {@code null} if none.
+   */
+  private File writing;
+
+  /**
+   * Started with the first write.
+   */
+  private Thread thread;
+
+  private boolean closed;
+
+  /**
+   * Creates an empty temporary file in the directory of the target file.
+   *
+   * @throws IOException if the file cannot be created
+   */
+  static File tempFile(File target) throws IOException {
+    return File.createTempFile("." + target.getName() + "-", TEMP_SUFFIX, target.getParentFile());
+  }
+
+  /**
+   * Flushes a completely written temporary file to the disk and atomically
+   * replaces the target file with it. The temporary file is deleted if this
+   * fails.
+   *
+   * @throws IOException if the file cannot be synced or renamed
+   */
+  static void commit(File temp, File target) throws IOException {
+    try {
+      final RandomAccessFile file = new RandomAccessFile(temp, "rw");
+      try {
+        file.getFD().sync();
+      } finally {
+        file.close();
+      }
+
+      if (!temp.renameTo(target)) {
+        throw new IOException("Cannot rename " + temp + " to " + target);
+      }
+    } finally {
+      temp.delete();
+    }
+  }
+
+  /**
+   * Writes the content to a temporary file and commits it.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  static void write(File target, Content content) throws IOException {
+    final File temp = tempFile(target);
+    final OutputStream stream = new FileOutputStream(temp);
+    try {
+      content.writeTo(stream);
+      stream.close();
+    } catch (IOException e) {
+      Resources.closeQuietly(stream);
+      temp.delete();
+      throw e;
+    }
+
+    commit(temp, target);
+  }
+
+  /**
+   * Content of a file which is written by {@link #write(File, Content)}.
+   */
+  interface Content {
+    void writeTo(OutputStream stream) throws IOException;
+  }
+
+  /**
+   * Queues the files of a freshly loaded feed for writing, replacing any
+   * pending write of the same cache file.
+   *
+   * @throws IllegalStateException if this writer has been closed
+   */
+  void submit(File cacheFile, Entry entry) {
+    final Entry replaced;
+    synchronized (pending) {
+      if (closed) {
+        entry.discard();
+        throw new IllegalStateException("Cache writer has been closed.");
+      }
+
+      replaced = pending.put(cacheFile, entry);
+      if (thread == null) {
+        thread = new Thread(this, THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+      }
+      pending.notifyAll();
+    }
+
+    if (replaced != null) {
+      replaced.discard();
+    }
+  }
+
+  /**
+   * Waits until there is no pending write of the cache file, so that it can
+   * be read consistently.
+   */
+  void await(File cacheFile) {
+    synchronized (pending) {
+      while (cacheFile.equals(writing) || pending.containsKey(cacheFile)) {
+        if (!waitUninterruptibly()) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits until all pending writes have been committed.
+   */
+  void flush() {
+    synchronized (pending) {
+      while (writing != null || !pending.isEmpty()) {
+        if (!waitUninterruptibly()) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Commits all pending writes and stops the background thread. Subsequent
+   * writes are rejected.
+   */
+  void close() {
+    synchronized (pending) {
+      closed = true;
+      pending.notifyAll();
+    }
+    flush();
+  }
+
+  /**
+   * Must be called while holding the lock.
+   *
+   * @return {@code false} if the thread has been interrupted, whose interrupt
+   *         status is then restored
+   */
+  private boolean waitUninterruptibly() {
+    try {
+      pending.wait();
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      final File cacheFile;
+      final Entry entry;
+      synchronized (pending) {
+        while (pending.isEmpty()) {
+          if (closed) {
+            thread = null;
+            return;
+          }
+          try {
+            pending.wait();
+          } catch (InterruptedException e) {
+            // keep on writing until closed
+          }
+        }
+
+        final Iterator<Map.Entry<File, Entry>> i = pending.entrySet().iterator();
+        final Map.Entry<File, Entry> next = i.next();
+        i.remove();
+        cacheFile = writing = next.getKey();
+        entry = next.getValue();
+      }
+
+      try {
+        entry.commit(cacheFile);
+      } catch (IOException e) {
+        entry.fail(cacheFile);
+      } catch (RuntimeException e) {
+        entry.fail(cacheFile);
+      } finally {
+        synchronized (pending) {
+          writing = null;
+          pending.notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * The files of a freshly loaded feed: its XML, snapshot and HTTP cache
+   * validators. Files which are not part of the entry are deleted, so that
+   * no outdated file remains next to the new ones.
+   */
+  static final class Entry {
+
+    /** Completely written XML, {@code null} to delete the cache file */
+    private final File xml;
+
+    /** Feed to snapshot, {@code null} to delete the snapshot */
+    private final RSSFeed snapshot;
+
+    /** {@code null} to delete the validators */
+    private final CacheValidators validators;
+
+    Entry(File xml, RSSFeed snapshot, CacheValidators validators) {
+      this.xml = xml;
+      this.snapshot = snapshot;
+      this.validators = validators;
+    }
+
+    /**
+     * The validators are removed first and written last, so that a crash in
+     * between leads to an unconditional request rather than a cache which
+     * does not match its validators.
+     */
+    void commit(File cacheFile) throws IOException {
+      CacheValidators.delete(cacheFile);
+
+      final File snapshotFile = Snapshots.file(cacheFile);
+      snapshotFile.delete();
+
+      if (xml == null) {
+        cacheFile.delete();
+      } else {
+        CacheWriter.commit(xml, cacheFile);
+      }
+
+      if (snapshot != null) {
+        write(snapshotFile, new Content() {
+          @Override
+          public void writeTo(OutputStream stream) throws IOException {
+            Snapshots.write(snapshot, stream);
+          }
+        });
+      }
+
+      if (validators != null) {
+        validators.write(cacheFile);
+      }
+    }
+
+    /**
+     * Leaves no snapshot or validators which might not match the cache file.
+     */
+    void fail(File cacheFile) {
+      discard();
+      Snapshots.file(cacheFile).delete();
+      CacheValidators.delete(cacheFile);
+    }
+
+    /**
+     * Deletes the temporary file of a write which is not committed.
+     */
+    void discard() {
+      if (xml != null) {
+        xml.delete();
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mcsoxford.rss;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+
+/**
+ * Internal helper class for compressed HTTP responses and cache files. Feeds
+ * are decompressed while they are parsed, so the uncompressed document is
+ * never held in memory.
+ * <p>
+ * Closing a decoded stream releases the native memory of its inflater, if
+ * any, but never closes the underlying stream, even if the content is not
+ * encoded. This allows an HTTP request to be aborted before its content stream
+ * is closed, because closing the content stream would read the rest of it.
+ *
+ * @author Mr Horn
+ */
+final class Compression {
+
+  /**
+   * Value of the Accept-Encoding request header.
+   */
+  static final String ACCEPT_ENCODING = "gzip, deflate";
+
+  static final String GZIP = "gzip";
+  private static final String X_GZIP = "x-gzip";
+  private static final String DEFLATE = "deflate";
+  private static final String IDENTITY = "identity";
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /* Hide constructor */
+  private Compression() {}
+
+  /**
+   * Returns the normalized Content-Encoding of the entity, {@code null} if it
+   * is not encoded.
+   */
+  static String encodingOf(HttpEntity entity) {
+    final Header header = entity.getContentEncoding();
+    final String encoding = header == null ? null : header.getValue().trim().toLowerCase(Locale.US);
+    if (encoding == null || encoding.length() == 0 || IDENTITY.equals(encoding)) {
+      return null;
+    }
+
+    return X_GZIP.equals(encoding) ? GZIP : encoding;
+  }
+
+  /**
+   * Returns a stream which decompresses the content in the specified encoding,
+   * or which passes it through if the encoding is {@code null}. Closing the
+   * returned stream leaves the specified stream open.
+   *
+   * @param encoding normalized Content-Encoding, {@code null} for none
+   * @throws IOException if the encoding is not supported or the header of the
+   *           compressed content cannot be read
+   */
+  static InputStream decode(InputStream in, String encoding) throws IOException {
+    if (encoding == null) {
+      return new Unclosable(in);
+    } else if (GZIP.equals(encoding)) {
+      return new GZIPInputStream(new Unclosable(in), BUFFER_SIZE);
+    } else if (DEFLATE.equals(encoding)) {
+      return inflate(new Unclosable(in));
+    }
+
+    throw new IOException("Unsupported Content-Encoding: " + encoding);
+  }
+
+  /**
+   * Many servers send raw deflate data rather than the zlib format which
+   * HTTP specifies, so the zlib header is checked before the data is inflated.
+   */
+  private static InputStream inflate(InputStream in) throws IOException {
+    final PushbackInputStream pushback = new PushbackInputStream(in, 2);
+    final byte[] header = new byte[2];
+    int length = 0;
+    for (int n; length < header.length && (n = pushback.read(header, length, header.length - length)) != -1;) {
+      length += n;
+    }
+    pushback.unread(header, 0, length);
+
+    final boolean zlib = length == 2 && (header[0] & 0x0F) == 8
+        && ((header[0] & 0xFF) << 8 | (header[1] & 0xFF)) % 31 == 0;
+    return new InflaterInputStream(pushback, new Inflater(!zlib), BUFFER_SIZE) {
+      @Override
+      public void close() throws IOException {
+        super.close();
+        inf.end();
+      }
+    };
+  }
+
+  /**
+   * Returns a stream of the XML in a cache file, which is gzip compressed if
+   * it starts with the gzip magic number. An XML document cannot start with
+   * these bytes.
+   *
+   * @throws IOException if the gzip header cannot be read
+   */
+  static InputStream decodeCache(ByteBuffer buffer) throws IOException {
+    final InputStream in = new ByteBufferInputStream(buffer);
+    final int position = buffer.position();
+    if (buffer.remaining() >= 2 && buffer.get(position) == (byte) 0x1F
+        && buffer.get(position + 1) == (byte) 0x8B) {
+      return decode(in, GZIP);
+    }
+
+    return in;
+  }
+
+  /**
+   * Releases the native memory of a stream returned by
+   * {@link #decode(InputStream, String)}, if any.
+   */
+  static void release(InputStream decoded) {
+    if (decoded instanceof InflaterInputStream) {
+      Resources.closeQuietly(decoded);
+    }
+  }
+
+  /**
+   * Leaves the underlying stream open when it is closed.
+   */
+  private static final class Unclosable extends FilterInputStream {
+
+    Unclosable(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public void close() {}
+
+  }
+
+}
@@ -16,37 +16,303 @@
 
 package org.mcsoxford.rss;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-
 /**
- * Internal helper class for date conversions.
- * 
+ * Internal helper class for date conversions. The RFC 822 parser works
+ * directly on the characters, keeps no state and allocates no objects, so it
+ * can be used concurrently without locking.
+ *
  * @author Mr Horn
  */
 final class Dates {
 
   /**
-   * @see <a href="http://www.ietf.org/rfc/rfc0822.txt">RFC 822</a>
+   * Returned by {@link #parseRfc822Millis(CharSequence)} if the text is not a
+   * valid date.
    */
-  private static final SimpleDateFormat RFC822 = new SimpleDateFormat(
-      "EEE, dd MMM yyyy HH:mm:ss Z", java.util.Locale.ENGLISH);
+  static final long INVALID = Long.MIN_VALUE;
 
   /* Hide constructor */
   private Dates() {}
-  
+
   /**
    * Parses string as an RFC 822 date/time.
-   * 
+   *
    * @throws RSSFault if the string is not a valid RFC 822 date/time
+   * @see #parseRfc822Millis(CharSequence)
    */
   static java.util.Date parseRfc822(String date) {
-    try {
-      return RFC822.parse(date);
-    } catch (ParseException e) {
-      throw new RSSFault(e);
+    final long time = parseRfc822Millis(date);
+    if (time == INVALID) {
+      throw new RSSFault("Invalid RFC 822 date: " + date);
     }
+
+    return new java.util.Date(time);
   }
 
-}
+  /**
+   * Parses text as an RFC 822 or RFC 1123 date/time and returns the number of
+   * milliseconds since the epoch, or {@link #INVALID}. Common deviations found
+   * in RSS feeds are accepted: a missing or long weekday, a missing comma,
+   * dashes between day, month and year, long month names, two-digit years,
+   * missing seconds, and a missing time zone which is taken to be GMT.
+   *
+   * @see <a href="http://www.ietf.org/rfc/rfc0822.txt">RFC 822</a>
+   */
+  static long parseRfc822Millis(CharSequence text) {
+    if (text == null) {
+      return INVALID;
+    }
+
+    final int n = text.length();
+    int i = skipSpaces(text, 0, n);
+
+    // optional day of week
+    if (i < n && isLetter(text.charAt(i))) {
+      while (i < n && isLetter(text.charAt(i))) {
+        i++;
+      }
+      if (i < n && text.charAt(i) == ',') {
+        i++;
+      }
+      i = skipSpaces(text, i, n);
+    }
+
+    // day of month
+    int start = i;
+    int day = 0;
+    while (i < n && i - start < 2 && isDigit(text.charAt(i))) {
+      day = day * 10 + text.charAt(i++) - '0';
+    }
+    if (i == start || day < 1 || day > 31) {
+      return INVALID;
+    }
+    i = skipSeparators(text, i, n);
+
+    // month name, of which the first three letters count
+    if (i + 3 > n) {
+      return INVALID;
+    }
+    final int month = month(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2));
+    if (month < 0) {
+      return INVALID;
+    }
+    i += 3;
+    while (i < n && isLetter(text.charAt(i))) {
+      i++;
+    }
+    i = skipSeparators(text, i, n);
+
+    // year
+    start = i;
+    int year = 0;
+    while (i < n && i - start < 4 && isDigit(text.charAt(i))) {
+      year = year * 10 + text.charAt(i++) - '0';
+    }
+    switch (i - start) {
+    case 2:
+      // see RFC 2822, section 4.3
+      year += year < 50 ? 2000 : 1900;
+      break;
+    case 3:
+      year += 1900;
+      break;
+    case 4:
+      break;
+    default:
+      return INVALID;
+    }
+    i = skipSpaces(text, i, n);
+
+    // hours and minutes with optional seconds
+    int hour = 0;
+    int minute = 0;
+    int second = 0;
+    if (i < n && isDigit(text.charAt(i))) {
+      start = i;
+      while (i < n && i - start < 2 && isDigit(text.charAt(i))) {
+        hour = hour * 10 + text.charAt(i++) - '0';
+      }
+      if (i + 2 >= n || text.charAt(i) != ':') {
+        return INVALID;
+      }
+      minute = twoDigits(text, i + 1);
+      i += 3;
+      if (i + 2 < n && text.charAt(i) == ':') {
+        second = twoDigits(text, i + 1);
+        i += 3;
+      }
+      // ignore fractions of a second
+      if (i < n && text.charAt(i) == '.') {
+        i++;
+        while (i < n && isDigit(text.charAt(i))) {
+          i++;
+        }
+      }
+      if (hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+        return INVALID;
+      }
+      i = skipSpaces(text, i, n);
+    }
+
+    // time zone
+    int offset = 0;
+    if (i < n && isLetter(text.charAt(i))) {
+      start = i;
+      while (i < n && isLetter(text.charAt(i))) {
+        i++;
+      }
+      offset = zone(text, start, i);
+      if (offset == Integer.MIN_VALUE) {
+        return INVALID;
+      }
+    }
+    if (i < n && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+      final int sign = text.charAt(i) == '-' ? -1 : 1;
+      final int hours = twoDigits(text, i + 1);
+      i += 3;
+      if (i < n && text.charAt(i) == ':') {
+        i++;
+      }
+      final int minutes = twoDigits(text, i);
+      if (hours < 0 || minutes < 0 || minutes > 59) {
+        return INVALID;
+      }
+      offset += sign * (hours * 60 + minutes);
+    }
+
+    final long days = daysFromCivil(year, month, day);
+    return (((days * 24 + hour) * 60 + minute - offset) * 60 + second) * 1000L;
+  }
+
+  /**
+   * Returns the month from 1 to 12 given its first three letters in any case,
+   * or {@code -1} if there is no such month.
+   */
+  private static int month(char a, char b, char c) {
+    // lower-case ASCII letters
+    a |= 0x20;
+    b |= 0x20;
+    c |= 0x20;
+
+    switch (a) {
+    case 'j':
+      if (b == 'a' && c == 'n') return 1;
+      if (b == 'u' && c == 'n') return 6;
+      if (b == 'u' && c == 'l') return 7;
+      return -1;
+    case 'f':
+      return b == 'e' && c == 'b' ? 2 : -1;
+    case 'm':
+      if (b == 'a' && c == 'r') return 3;
+      if (b == 'a' && c == 'y') return 5;
+      return -1;
+    case 'a':
+      if (b == 'p' && c == 'r') return 4;
+      if (b == 'u' && c == 'g') return 8;
+      return -1;
+    case 's':
+      return b == 'e' && c == 'p' ? 9 : -1;
+    case 'o':
+      return b == 'c' && c == 't' ? 10 : -1;
+    case 'n':
+      return b == 'o' && c == 'v' ? 11 : -1;
+    case 'd':
+      return b == 'e' && c == 'c' ? 12 : -1;
+    default:
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the offset from GMT in minutes of a named time zone, or
+   * {@code Integer.MIN_VALUE} if the name is unknown. Single-letter military
+   * zones are treated as GMT as recommended by RFC 2822.
+   */
+  private static int zone(CharSequence text, int start, int end) {
+    final int length = end - start;
+    if (length == 1) {
+      return 0;
+    } else if (length == 2) {
+      return is(text, start, 'U', 'T') ? 0 : Integer.MIN_VALUE;
+    } else if (length != 3) {
+      return Integer.MIN_VALUE;
+    }
+
+    final char a = (char) (text.charAt(start) & ~0x20);
+    final char b = (char) (text.charAt(start + 1) & ~0x20);
+    final char c = (char) (text.charAt(start + 2) & ~0x20);
+    if ((a == 'G' && b == 'M' && c == 'T') || (a == 'U' && b == 'T' && c == 'C')) {
+      return 0;
+    } else if (c != 'T' || (b != 'S' && b != 'D')) {
+      return Integer.MIN_VALUE;
+    }
+
+    // North American zones, with one hour less offset in daylight saving time
+    final int daylight = b == 'D' ? 60 : 0;
+    switch (a) {
+    case 'E':
+      return -300 + daylight;
+    case 'C':
+      return -360 + daylight;
+    case 'M':
+      return -420 + daylight;
+    case 'P':
+      return -480 + daylight;
+    default:
+      return Integer.MIN_VALUE;
+    }
+  }
+
+  private static boolean is(CharSequence text, int start, char a, char b) {
+    return (text.charAt(start) & ~0x20) == a && (text.charAt(start + 1) & ~0x20) == b;
+  }
+
+  /**
+   * Returns the value of two decimal digits at the index, or {@code -1} if
+   * there are no such digits.
+   */
+  private static int twoDigits(CharSequence text, int i) {
+    if (i + 1 >= text.length() || !isDigit(text.charAt(i)) || !isDigit(text.charAt(i + 1))) {
+      return -1;
+    }
 
+    return (text.charAt(i) - '0') * 10 + text.charAt(i + 1) - '0';
+  }
+
+  /**
+   * Returns the number of days since 1970-01-01 of a date in the proleptic
+   * Gregorian calendar. Days beyond the end of the month roll over into the
+   * next month.
+   */
+  private static long daysFromCivil(int year, int month, int day) {
+    final int y = month <= 2 ? year - 1 : year;
+    final int era = (y >= 0 ? y : y - 399) / 400;
+    final int yearOfEra = y - era * 400;
+    final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097L + dayOfEra - 719468L;
+  }
+
+  private static int skipSpaces(CharSequence text, int i, int n) {
+    while (i < n && Character.isWhitespace(text.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipSeparators(CharSequence text, int i, int n) {
+    while (i < n && (text.charAt(i) == '-' || Character.isWhitespace(text.charAt(i)))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Immutable perfect hash table which maps a fixed set of XML element names to
+ * their index. The slot of a name is computed from its length and its first
+ * and last characters only, so a lookup touches at most one candidate and
+ * needs a single string comparison. Unlike {@link java.util.HashMap}, lookups
+ * neither hash the whole name nor follow collision chains, never allocate and
+ * are thread-safe.
+ *
+ * @author Mr Horn
+ */
+final class ElementTable {
+
+  /**
+   * Index returned by {@link #get(String)} for unknown element names.
+   */
+  static final int NONE = -1;
+
+  /**
+   * Largest table which is tried before construction fails.
+   */
+  private static final int MAX_SIZE = 1 << 10;
+
+  /**
+   * Element name in each slot, {@code null} for empty slots.
+   */
+  private final String[] names;
+
+  /**
+   * Index of the element name in each slot.
+   */
+  private final int[] indices;
+
+  /**
+   * Multiplier which has been found to be collision-free.
+   */
+  private final int seed;
+
+  /**
+   * Build a perfect hash table over the specified element names by searching
+   * for a multiplier without collisions.
+   *
+   * @param elements distinct, non-empty element names, each of which maps to
+   *          its position
+   * @throws IllegalArgumentException if no perfect hash function is found
+   */
+  ElementTable(String... elements) {
+    for (int size = Integer.highestOneBit(Math.max(elements.length, 8)) << 1; size <= MAX_SIZE; size <<= 1) {
+      for (int seed = 1; seed < /* 2^16 */65536; seed += 2) {
+        final String[] names = new String[size];
+        if (fill(names, elements, seed)) {
+          this.names = names;
+          this.indices = new int[size];
+          this.seed = seed;
+          for (int i = 0; i < elements.length; i++) {
+            indices[slot(elements[i], seed, size - 1)] = i;
+          }
+          return;
+        }
+      }
+    }
+
+    throw new IllegalArgumentException("No perfect hash function for element names");
+  }
+
+  private static boolean fill(String[] names, String[] elements, int seed) {
+    for (String element : elements) {
+      final int slot = slot(element, seed, names.length - 1);
+      if (names[slot] != null) {
+        return false;
+      }
+      names[slot] = element;
+    }
+    return true;
+  }
+
+  private static int slot(String name, int seed, int mask) {
+    final int length = name.length();
+    final int hash = (name.charAt(0) * 31 + name.charAt(length - 1)) * 31 + length;
+    return ((hash * seed) >>> 16) & mask;
+  }
+
+  /**
+   * Returns the index of the specified element name.
+   *
+   * @return position of the name in the constructor arguments, or
+   *         {@link #NONE} if it is unknown
+   */
+  int get(String name) {
+    if (name.length() == 0) {
+      return NONE;
+    }
+
+    final int slot = slot(name, seed, names.length - 1);
+    return name.equals(names[slot]) ? indices[slot] : NONE;
+  }
+
+}
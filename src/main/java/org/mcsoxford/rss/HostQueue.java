@@ -0,0 +1,458 @@
+/*
+ * Copyright (C) 2011 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mcsoxford.rss;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.mcsoxford.rss.RSSLoader.RSSFuture;
+
+/**
+ * Internal blocking queue which schedules RSS feed loads per host. Each host
+ * has its own lane of pending loads. A load is only handed out while fewer than
+ * {@code hostLimit} loads for the same host are in progress, and lanes take
+ * turns in round-robin order. In priority mode, the pending load with the
+ * highest priority among all eligible lanes is handed out first; lanes only
+ * take turns among equal priorities.
+ * <p>
+ * Every load returned by {@link #take()} or {@link #poll()} must be passed to
+ * {@link #release(RSSFuture)} once it has completed.
+ *
+ * @author A. Horn
+ */
+class HostQueue extends AbstractQueue<RSSFuture> implements BlockingQueue<RSSFuture> {
+
+  /**
+   * Pending loads for a single host.
+   */
+  private static final class Lane {
+
+    /** Host name or {@code null} for the lane of the loader's sentinel */
+    final String host;
+    final Queue<RSSFuture> pending;
+
+    /** Number of loads handed out and not yet released */
+    int active;
+
+    Lane(String host, Queue<RSSFuture> pending) {
+      this.host = host;
+      this.pending = pending;
+    }
+
+  }
+
+  private final int capacity;
+  private final int hostLimit;
+  private final boolean priority;
+
+  /** Lanes in round-robin order */
+  private final List<Lane> lanes = new ArrayList<Lane>();
+  private final Map<String, Lane> hosts = new HashMap<String, Lane>();
+
+  /** Index of the lane which is considered first by the next selection */
+  private int cursor;
+
+  /** Total number of pending loads in all lanes */
+  private int count;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+
+  /**
+   * @param capacity maximum number of pending loads
+   * @param hostLimit maximum number of concurrent loads per host
+   * @param priority {@code true} to order loads by priority, {@code false} for
+   *          FIFO order within each host
+   * @throws IllegalArgumentException if capacity or host limit is not positive
+   */
+  HostQueue(int capacity, int hostLimit, boolean priority) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive.");
+    } else if (hostLimit < 1) {
+      throw new IllegalArgumentException("Host limit must be positive.");
+    }
+
+    this.capacity = capacity;
+    this.hostLimit = hostLimit;
+    this.priority = priority;
+  }
+
+  /**
+   * Returns the lower-case host and port of the URI, the empty string if it
+   * has none, or {@code null} if the URI is {@code null}.
+   */
+  static String host(String uri) {
+    if (uri == null) {
+      return null;
+    }
+
+    int start = uri.indexOf("://");
+    start = start < 0 ? 0 : start + 3;
+
+    int end = start;
+    while (end < uri.length()) {
+      final char c = uri.charAt(end);
+      if (c == '/' || c == '?' || c == '#') {
+        break;
+      } else if (c == '@') {
+        // skip user information
+        start = end + 1;
+      }
+      end++;
+    }
+
+    return uri.substring(start, end).toLowerCase(java.util.Locale.ENGLISH);
+  }
+
+  /**
+   * Signals that a load returned by this queue has completed so that another
+   * load for the same host can be handed out.
+   */
+  void release(RSSFuture future) {
+    final String host = host(future.uri);
+    if (host == null) {
+      return;
+    }
+
+    lock.lock();
+    try {
+      final Lane lane = hosts.get(host);
+      if (lane != null && lane.active > 0) {
+        lane.active--;
+        removeIfIdle(lane);
+        notEmpty.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offer(RSSFuture future) {
+    if (future == null) {
+      throw new NullPointerException();
+    }
+
+    lock.lock();
+    try {
+      if (count == capacity) {
+        return false;
+      }
+
+      enqueue(future);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offer(RSSFuture future, long timeout, TimeUnit unit) throws InterruptedException {
+    if (future == null) {
+      throw new NullPointerException();
+    }
+
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (count == capacity) {
+        if (nanos <= 0) {
+          return false;
+        }
+        nanos = notFull.awaitNanos(nanos);
+      }
+
+      enqueue(future);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(RSSFuture future) throws InterruptedException {
+    if (future == null) {
+      throw new NullPointerException();
+    }
+
+    lock.lockInterruptibly();
+    try {
+      while (count == capacity) {
+        notFull.await();
+      }
+
+      enqueue(future);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public RSSFuture take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      RSSFuture future;
+      while ((future = select(true)) == null) {
+        notEmpty.await();
+      }
+      return future;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public RSSFuture poll() {
+    lock.lock();
+    try {
+      return select(true);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public RSSFuture poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      RSSFuture future;
+      while ((future = select(true)) == null) {
+        if (nanos <= 0) {
+          return null;
+        }
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      return future;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public RSSFuture peek() {
+    lock.lock();
+    try {
+      return select(false);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return count;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int remainingCapacity() {
+    lock.lock();
+    try {
+      return capacity - count;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super RSSFuture> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Removes pending loads regardless of host limits. Drained loads must not be
+   * passed to {@link #release(RSSFuture)}.
+   */
+  @Override
+  public int drainTo(Collection<? super RSSFuture> c, int maxElements) {
+    if (c == null) {
+      throw new NullPointerException();
+    } else if (c == this) {
+      throw new IllegalArgumentException();
+    }
+
+    lock.lock();
+    try {
+      int n = 0;
+      for (int i = 0; i < lanes.size() && n < maxElements;) {
+        final Lane lane = lanes.get(i);
+        while (n < maxElements && !lane.pending.isEmpty()) {
+          c.add(lane.pending.poll());
+          n++;
+        }
+
+        if (!removeIfIdle(lane)) {
+          i++;
+        }
+      }
+
+      count -= n;
+      if (n > 0) {
+        notFull.signalAll();
+      }
+      return n;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns a snapshot of the pending loads in no particular order.
+   */
+  @Override
+  public Iterator<RSSFuture> iterator() {
+    lock.lock();
+    try {
+      final List<RSSFuture> snapshot = new ArrayList<RSSFuture>(count);
+      for (Lane lane : lanes) {
+        snapshot.addAll(lane.pending);
+      }
+      return java.util.Collections.unmodifiableList(snapshot).iterator();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /* Must hold lock */
+  private void enqueue(RSSFuture future) {
+    final String host = host(future.uri);
+    Lane lane = hosts.get(host);
+    if (lane == null) {
+      final Queue<RSSFuture> pending;
+      if (priority) {
+        pending = new PriorityQueue<RSSFuture>();
+      } else {
+        pending = new LinkedList<RSSFuture>();
+      }
+
+      lane = new Lane(host, pending);
+      hosts.put(host, lane);
+      lanes.add(lane);
+    }
+
+    lane.pending.add(future);
+    count++;
+    notEmpty.signal();
+  }
+
+  /**
+   * Finds the next load which may be handed out, starting at the round-robin
+   * cursor. Returns {@code null} if every lane is either empty or has reached
+   * the host limit. Must hold lock.
+   *
+   * @param remove {@code true} to dequeue the selected load
+   */
+  private RSSFuture select(boolean remove) {
+    final int size = lanes.size();
+    int selected = -1;
+    int pendingElsewhere = 0;
+    for (int n = 0; n < size; n++) {
+      final int i = (cursor + n) % size;
+      final Lane lane = lanes.get(i);
+      final RSSFuture head = lane.pending.peek();
+      if (head == null) {
+        continue;
+      }
+
+      if (lane.host != null) {
+        pendingElsewhere += lane.pending.size();
+        if (lane.active >= hostLimit) {
+          continue;
+        }
+      } else if (!priority) {
+        // in FIFO order, the sentinel waits until all other loads are handed out
+        continue;
+      }
+
+      if (selected < 0) {
+        selected = i;
+        if (!priority) {
+          break;
+        }
+      } else if (head.compareTo(lanes.get(selected).pending.peek()) < 0) {
+        selected = i;
+      }
+    }
+
+    if (selected < 0 && !priority && pendingElsewhere == 0) {
+      final Lane sentinel = hosts.get(null);
+      if (sentinel != null && !sentinel.pending.isEmpty()) {
+        selected = lanes.indexOf(sentinel);
+      }
+    }
+
+    if (selected < 0) {
+      return null;
+    } else if (!remove) {
+      return lanes.get(selected).pending.peek();
+    }
+
+    final Lane lane = lanes.get(selected);
+    final RSSFuture future = lane.pending.poll();
+    count--;
+    notFull.signal();
+
+    if (lane.host != null) {
+      lane.active++;
+    }
+
+    // the next selection starts with the lane after the selected one
+    cursor = selected + 1;
+    removeIfIdle(lane);
+    return future;
+  }
+
+  /**
+   * Removes a lane without pending or active loads. Must hold lock.
+   *
+   * @return {@code true} if the lane has been removed
+   */
+  private boolean removeIfIdle(Lane lane) {
+    if (!lane.pending.isEmpty() || lane.active > 0) {
+      return false;
+    }
+
+    final int index = lanes.indexOf(lane);
+    lanes.remove(index);
+    hosts.remove(lane.host);
+    if (index < cursor) {
+      cursor--;
+    }
+    if (cursor >= lanes.size()) {
+      cursor = 0;
+    }
+    return true;
+  }
+
+}
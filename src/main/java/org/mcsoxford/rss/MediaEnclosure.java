@@ -23,14 +23,34 @@ package org.mcsoxford.rss;
  */
 public final class MediaEnclosure {
 
-    private final android.net.Uri url;
+    private final String url;
     private final int length;
     private final String mimeType;
 
+    /**
+     * {@link #url} parsed on first access, {@code null} until then.
+     */
+    private android.net.Uri uri;
+
     /**
      * Returns the URL of the enclosure. The return value is never {@code null}.
+     * The URL is parsed on first access.
      */
     public android.net.Uri getUrl() {
+        android.net.Uri uri = this.uri;
+        if (uri == null) {
+            // racing threads parse equal values
+            uri = android.net.Uri.parse(url);
+            this.uri = uri;
+        }
+
+        return uri;
+    }
+
+    /**
+     * Internal method which does not parse the URL
+     */
+    String getUrlString() {
         return url;
     }
 
@@ -53,6 +73,14 @@ public final class MediaEnclosure {
      * Internal constructor for RSSHandler
      */
     MediaEnclosure(android.net.Uri url, int length, String mimeType) {
+        this(url.toString(), length, mimeType);
+        this.uri = url;
+    }
+
+    /**
+     * Internal constructor for RSSHandler which defers parsing the URL
+     */
+    MediaEnclosure(String url, int length, String mimeType) {
         this.url = url;
         this.length = length;
         this.mimeType = mimeType;
@@ -24,15 +24,32 @@ package org.mcsoxford.rss;
  */
 public final class MediaThumbnail {
 
-  private final android.net.Uri url;
+  private final String url;
   private final int height;
   private final int width;
 
+  /**
+   * {@link #url} parsed on first access, {@code null} until then.
+   */
+  private android.net.Uri uri;
+
   /**
    * Returns the URL of the thumbnail.
-   * The return value is never {@code null}.
+   * The return value is never {@code null}. The URL is parsed on first access.
    */
   public android.net.Uri getUrl() {
+    android.net.Uri uri = this.uri;
+    if (uri == null) {
+      // racing threads parse equal values
+      uri = android.net.Uri.parse(url);
+      this.uri = uri;
+    }
+
+    return uri;
+  }
+
+  /* Internal method which does not parse the URL */
+  String getUrlString() {
     return url;
   }
 
@@ -52,6 +69,12 @@ public final class MediaThumbnail {
 
   /* Internal constructor for RSSHandler */
   MediaThumbnail(android.net.Uri url, int height, int width) {
+    this(url.toString(), height, width);
+    this.uri = url;
+  }
+
+  /* Internal constructor for RSSHandler which defers parsing the URL */
+  MediaThumbnail(String url, int height, int width) {
     this.url = url;
     this.height = height;
     this.width = width;
@@ -61,7 +84,7 @@ public final class MediaThumbnail {
    * Returns the thumbnail's URL as a string.
    */
   public String toString() {
-    return url.toString();
+    return url;
   }
 
   /**
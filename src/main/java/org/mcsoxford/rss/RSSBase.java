@@ -26,10 +26,30 @@ import java.util.ArrayList;
 abstract class RSSBase {
 
   private String title;
-  private android.net.Uri link;
+  private String link;
+
+  /**
+   * {@link #link} parsed on first access, {@code null} until then.
+   */
+  private android.net.Uri linkUri;
   private String description;
   private java.util.List<String> categories;
-  private java.util.Date pubdate;
+
+  /**
+   * Raw publication date which is parsed on first access, or {@code null}.
+   * Cleared after {@link #pubdateTime} has been set, which publishes it.
+   */
+  private volatile String pubdateText;
+
+  /**
+   * Publication date in milliseconds since the epoch, or {@link Dates#INVALID}.
+   */
+  private long pubdateTime = Dates.INVALID;
+
+  /**
+   * Date object which is created on first access, {@code null} until then.
+   */
+  private volatile java.util.Date pubdate;
 
   /**
    * Specify initial capacity for the List which contains the category names.
@@ -47,7 +67,22 @@ abstract class RSSBase {
     return description;
   }
 
+  /**
+   * Returns the link, which is parsed on first access.
+   */
   public android.net.Uri getLink() {
+    android.net.Uri uri = linkUri;
+    if (uri == null && link != null) {
+      // racing threads parse equal values
+      uri = android.net.Uri.parse(link);
+      linkUri = uri;
+    }
+
+    return uri;
+  }
+
+  /* Internal method which does not parse the link */
+  String getLinkString() {
     return link;
   }
 
@@ -59,8 +94,39 @@ abstract class RSSBase {
     return java.util.Collections.unmodifiableList(categories);
   }
 
+  /**
+   * Returns the publication date or {@code null} if it is absent or invalid.
+   * The Date object is created on first access.
+   */
   public java.util.Date getPubDate() {
-    return pubdate;
+    java.util.Date date = pubdate;
+    if (date == null) {
+      final long time = getPubDateTime();
+      if (time == Dates.INVALID) {
+        return null;
+      }
+
+      date = new java.util.Date(time);
+      pubdate = date;
+    }
+
+    return date;
+  }
+
+  /**
+   * Returns the publication date in milliseconds since the epoch without
+   * creating a Date object.
+   * 
+   * @return milliseconds since the epoch, {@code Long.MIN_VALUE} if the date
+   *         is absent or invalid
+   */
+  public long getPubDateTime() {
+    final String text = pubdateText;
+    if (text != null) {
+      pubdateTime = Dates.parseRfc822Millis(text);
+      pubdateText = null;
+    }
+    return pubdateTime;
   }
 
   void setTitle(String title) {
@@ -68,7 +134,14 @@ abstract class RSSBase {
   }
 
   void setLink(android.net.Uri link) {
+    this.link = link == null ? null : link.toString();
+    this.linkUri = link;
+  }
+
+  /* Internal method for RSSHandler which defers parsing the link */
+  void setLinkString(String link) {
     this.link = link;
+    this.linkUri = null;
   }
 
   void setDescription(String description) {
@@ -84,9 +157,25 @@ abstract class RSSBase {
   }
 
   void setPubDate(java.util.Date pubdate) {
+    this.pubdateText = null;
+    this.pubdateTime = pubdate == null ? Dates.INVALID : pubdate.getTime();
     this.pubdate = pubdate;
   }
 
+  /* Internal method for RSSHandler which stores the date as a primitive */
+  void setPubDateTime(long time) {
+    this.pubdateText = null;
+    this.pubdateTime = time;
+    this.pubdate = null;
+  }
+
+  /* Internal method for RSSHandler which defers parsing the date */
+  void setPubDateText(String text) {
+    this.pubdateText = text;
+    this.pubdateTime = Dates.INVALID;
+    this.pubdate = null;
+  }
+
   /**
    * Returns the title.
    */
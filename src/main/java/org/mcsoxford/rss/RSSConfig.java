@@ -25,6 +25,73 @@ package org.mcsoxford.rss;
  */
 public final class RSSConfig {
 
+  /**
+   * Field mask bit for the &lt;title&gt; of feeds and items.
+   */
+  public static final int FIELD_TITLE = 1;
+
+  /**
+   * Field mask bit for the &lt;description&gt; of feeds and items.
+   */
+  public static final int FIELD_DESCRIPTION = 1 << 1;
+
+  /**
+   * Field mask bit for the &lt;content:encoded&gt; body of items.
+   */
+  public static final int FIELD_CONTENT = 1 << 2;
+
+  /**
+   * Field mask bit for the &lt;link&gt; of feeds and items.
+   */
+  public static final int FIELD_LINK = 1 << 3;
+
+  /**
+   * Field mask bit for the &lt;category&gt; elements of feeds and items.
+   */
+  public static final int FIELD_CATEGORIES = 1 << 4;
+
+  /**
+   * Field mask bit for the &lt;pubDate&gt; of feeds and items.
+   */
+  public static final int FIELD_PUBDATE = 1 << 5;
+
+  /**
+   * Field mask bit for the &lt;media:thumbnail&gt; elements of items.
+   */
+  public static final int FIELD_THUMBNAILS = 1 << 6;
+
+  /**
+   * Field mask bit for the &lt;lastBuildDate&gt; of feeds.
+   */
+  public static final int FIELD_LAST_BUILD_DATE = 1 << 7;
+
+  /**
+   * Field mask bit for the &lt;ttl&gt; of feeds.
+   */
+  public static final int FIELD_TTL = 1 << 8;
+
+  /**
+   * Field mask bit for the &lt;enclosure&gt; of items.
+   */
+  public static final int FIELD_ENCLOSURE = 1 << 9;
+
+  /**
+   * Field mask which includes all supported RSS elements.
+   */
+  public static final int FIELD_ALL = (1 << 10) - 1;
+
+  /**
+   * Dispatch XML elements with a hash table lookup of their name.
+   */
+  public static final int DISPATCH_HASH = 0;
+
+  /**
+   * Dispatch XML elements with a precomputed perfect hash of the supported
+   * names, which needs neither a hash code of the whole name nor a per-parse
+   * hash table.
+   */
+  public static final int DISPATCH_PERFECT_HASH = 1;
+
   /**
    * Average number of RSS item &lt;category&gt; elements which serves as the
    * initial capacity of the List implementation.
@@ -37,6 +104,98 @@ public final class RSSConfig {
    */
   final byte thumbnailAvg;
 
+  /**
+   * Bitwise OR of the {@code FIELD_*} constants of the RSS elements which are
+   * parsed. The character data of all other elements is skipped.
+   */
+  final int fields;
+
+  /**
+   * Either {@link #DISPATCH_HASH} or {@link #DISPATCH_PERFECT_HASH}.
+   */
+  final int dispatch;
+
+  /**
+   * If {@code true}, repeated category names within a feed share a single
+   * String instance.
+   */
+  final boolean deduplicate;
+
+  /**
+   * Pool of category names which is shared across parses, {@code null} if
+   * disabled.
+   */
+  final RSSStringPool stringPool;
+
+  /**
+   * Expected number of RSS items per feed, zero to use the number of items of
+   * the previously parsed feed.
+   */
+  final int itemCapacity;
+
+  /**
+   * If {@code true}, dates are kept as text and parsed on access. Otherwise,
+   * they are parsed into milliseconds while the feed is parsed.
+   */
+  final boolean lazyDates;
+
+  /**
+   * Maximum number of pooled HTTP connections in total.
+   */
+  final int maxConnections;
+
+  /**
+   * Maximum number of pooled HTTP connections per host.
+   */
+  final int maxConnectionsPerRoute;
+
+  /**
+   * Upper bound for keeping an idle connection alive, in milliseconds. Servers
+   * may ask for less with a Keep-Alive header.
+   */
+  final long keepAliveMillis;
+
+  /**
+   * Pooled connections which have been idle for longer are closed before the
+   * next request, in milliseconds. Zero disables the eviction.
+   */
+  final long idleTimeoutMillis;
+
+  /**
+   * Timeout for establishing a connection or obtaining one from the pool, in
+   * milliseconds. Zero waits indefinitely.
+   */
+  final int connectTimeoutMillis;
+
+  /**
+   * Timeout for each read from a connection, in milliseconds. Zero waits
+   * indefinitely.
+   */
+  final int socketTimeoutMillis;
+
+  /**
+   * Time limit for a load including all retries, in milliseconds. Zero for
+   * none.
+   */
+  final long totalTimeoutMillis;
+
+  /**
+   * Maximum number of retries after a transient failure.
+   */
+  final int maxRetries;
+
+  /**
+   * Cap of the random delay before the first retry, in milliseconds. The cap
+   * doubles with every further retry.
+   */
+  final long retryDelayMillis;
+
+  /**
+   * Longest delay before a retry, in milliseconds. A server which asks to
+   * retry even later is not retried.
+   */
+  final long maxRetryDelayMillis;
+
   /**
    * Instantiate an RSS configuration with the specified parameters.
    * 
@@ -46,17 +205,292 @@ public final class RSSConfig {
    *          elements in a typical RSS feed
    */
   public RSSConfig(byte categoryAvg, byte thumbnailAvg) {
-    this.categoryAvg = categoryAvg;
-    this.thumbnailAvg = thumbnailAvg;
+    this(new Builder().categoryAvg(categoryAvg).thumbnailAvg(thumbnailAvg));
   }
 
   /**
    * Instantiate an RSS configuration with default values.
    */
   public RSSConfig() {
-    this.categoryAvg = 3;
-    this.thumbnailAvg = 2;
+    this(new Builder());
   }
 
-}
+  private RSSConfig(Builder builder) {
+    this.categoryAvg = builder.categoryAvg;
+    this.thumbnailAvg = builder.thumbnailAvg;
+    this.fields = builder.fields;
+    this.dispatch = builder.dispatch;
+    this.deduplicate = builder.deduplicate;
+    this.stringPool = builder.stringPool;
+    this.itemCapacity = builder.itemCapacity;
+    this.lazyDates = builder.lazyDates;
+    this.maxConnections = builder.maxConnections;
+    this.maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+    this.keepAliveMillis = builder.keepAliveMillis;
+    this.idleTimeoutMillis = builder.idleTimeoutMillis;
+    this.connectTimeoutMillis = builder.connectTimeoutMillis;
+    this.socketTimeoutMillis = builder.socketTimeoutMillis;
+    this.totalTimeoutMillis = builder.totalTimeoutMillis;
+    this.maxRetries = builder.maxRetries;
+    this.retryDelayMillis = builder.retryDelayMillis;
+    this.maxRetryDelayMillis = builder.maxRetryDelayMillis;
+  }
 
+  /**
+   * Determines if the RSS elements of the specified field are parsed.
+   * 
+   * @param field one of the {@code FIELD_*} constants
+   */
+  boolean hasField(int field) {
+    return (fields & field) != 0;
+  }
+
+  /**
+   * Mutable builder of {@link RSSConfig} instances. Unset values keep their
+   * defaults.
+   */
+  public static final class Builder {
+
+    private byte categoryAvg = 3;
+    private byte thumbnailAvg = 2;
+    private int fields = FIELD_ALL;
+    private int dispatch = DISPATCH_PERFECT_HASH;
+    private boolean deduplicate = true;
+    private RSSStringPool stringPool;
+    private int itemCapacity;
+    private boolean lazyDates;
+    private int maxConnections = 20;
+    private int maxConnectionsPerRoute = 2;
+    private long keepAliveMillis = 30000;
+    private long idleTimeoutMillis = 30000;
+    private int connectTimeoutMillis = 15000;
+    private int socketTimeoutMillis = 30000;
+    private long totalTimeoutMillis = 120000;
+    private int maxRetries = 2;
+    private long retryDelayMillis = 500;
+    private long maxRetryDelayMillis = 30000;
+
+    /**
+     * @param categoryAvg average number of RSS item &lt;category&gt; elements
+     *          in a typical RSS feed
+     */
+    public Builder categoryAvg(byte categoryAvg) {
+      this.categoryAvg = categoryAvg;
+      return this;
+    }
+
+    /**
+     * @param thumbnailAvg average number of RSS item &lt;media:thumbnail&gt;
+     *          elements in a typical RSS feed
+     */
+    public Builder thumbnailAvg(byte thumbnailAvg) {
+      this.thumbnailAvg = thumbnailAvg;
+      return this;
+    }
+
+    /**
+     * Restrict parsing to the specified RSS elements. For example, a client
+     * which only lists headlines can skip large &lt;content:encoded&gt; bodies
+     * with {@code FIELD_TITLE | FIELD_LINK}.
+     * 
+     * @param fields bitwise OR of {@code FIELD_*} constants, by default
+     *          {@link RSSConfig#FIELD_ALL}
+     */
+    public Builder fields(int fields) {
+      this.fields = fields;
+      return this;
+    }
+
+    /**
+     * @param dispatch lookup of XML element names, either
+     *          {@link RSSConfig#DISPATCH_HASH} or the default
+     *          {@link RSSConfig#DISPATCH_PERFECT_HASH}
+     */
+    public Builder dispatch(int dispatch) {
+      this.dispatch = dispatch;
+      return this;
+    }
+
+    /**
+     * @param deduplicate {@code true} to share a single String instance among
+     *          repeated category names within a feed, which is the default
+     */
+    public Builder deduplicate(boolean deduplicate) {
+      this.deduplicate = deduplicate;
+      return this;
+    }
+
+    /**
+     * Share category names across all feeds which are parsed with this
+     * configuration. A pool takes precedence over the per-feed deduplication.
+     * 
+     * @param stringPool thread-safe pool of category names, {@code null} to
+     *          disable which is the default
+     */
+    public Builder stringPool(RSSStringPool stringPool) {
+      this.stringPool = stringPool;
+      return this;
+    }
+
+    /**
+     * @param itemCapacity expected number of RSS items per feed, which serves
+     *          as the initial capacity of the item list. By default, the
+     *          parser presizes the list to the number of items of the feed
+     *          which it parsed last, up to a limit. The list is trimmed to
+     *          size after parsing.
+     */
+    public Builder itemCapacity(int itemCapacity) {
+      this.itemCapacity = itemCapacity;
+      return this;
+    }
+
+    /**
+     * Choose how &lt;pubDate&gt; and &lt;lastBuildDate&gt; are stored. By
+     * default, they are parsed into a primitive {@code long} without an
+     * intermediate String, and Date objects are only created on access. Lazy
+     * dates keep the text instead and defer parsing until the date is read,
+     * which saves time if most dates are never read.
+     * 
+     * @param lazyDates {@code true} to parse dates on access
+     */
+    public Builder lazyDates(boolean lazyDates) {
+      this.lazyDates = lazyDates;
+      return this;
+    }
+
+    /**
+     * Size of the connection pool of the HTTP client which {@link RSSReader}
+     * creates. Connections are kept alive and reused, which saves a TCP and
+     * TLS handshake whenever a host is polled again.
+     * 
+     * @param maxConnections maximum number of connections in total, by
+     *          default 20
+     * @throws IllegalArgumentException if {@code maxConnections} is not
+     *           positive
+     */
+    public Builder maxConnections(int maxConnections) {
+      if (maxConnections < 1) {
+        throw new IllegalArgumentException("Maximum number of connections must be positive.");
+      }
+      this.maxConnections = maxConnections;
+      return this;
+    }
+
+    /**
+     * @param maxConnectionsPerRoute maximum number of connections to the same
+     *          host, by default 2
+     * @throws IllegalArgumentException if {@code maxConnectionsPerRoute} is
+     *           not positive
+     */
+    public Builder maxConnectionsPerRoute(int maxConnectionsPerRoute) {
+      if (maxConnectionsPerRoute < 1) {
+        throw new IllegalArgumentException("Maximum number of connections per route must be positive.");
+      }
+      this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+      return this;
+    }
+
+    /**
+     * @param keepAliveMillis maximum time in milliseconds to keep an idle
+     *          connection for reuse, by default 30 seconds. Servers may ask
+     *          for less with a Keep-Alive header.
+     * @throws IllegalArgumentException if {@code keepAliveMillis} is not
+     *           positive
+     */
+    public Builder keepAliveMillis(long keepAliveMillis) {
+      if (keepAliveMillis < 1) {
+        throw new IllegalArgumentException("Keep-alive time must be positive.");
+      }
+      this.keepAliveMillis = keepAliveMillis;
+      return this;
+    }
+
+    /**
+     * @param idleTimeoutMillis pooled connections which have been idle for
+     *          longer are closed before the next request, by default 30
+     *          seconds. Zero disables the eviction.
+     */
+    public Builder idleTimeoutMillis(long idleTimeoutMillis) {
+      this.idleTimeoutMillis = idleTimeoutMillis;
+      return this;
+    }
+
+    /**
+     * @param connectTimeoutMillis timeout in milliseconds for establishing a
+     *          connection or obtaining one from the pool, by default 15
+     *          seconds. Zero waits indefinitely.
+     * @throws IllegalArgumentException if {@code connectTimeoutMillis} is
+     *           negative
+     */
+    public Builder connectTimeoutMillis(int connectTimeoutMillis) {
+      if (connectTimeoutMillis < 0) {
+        throw new IllegalArgumentException("Connect timeout must not be negative.");
+      }
+      this.connectTimeoutMillis = connectTimeoutMillis;
+      return this;
+    }
+
+    /**
+     * @param socketTimeoutMillis timeout in milliseconds for each read from a
+     *          connection, by default 30 seconds. Zero waits indefinitely.
+     * @throws IllegalArgumentException if {@code socketTimeoutMillis} is
+     *           negative
+     */
+    public Builder socketTimeoutMillis(int socketTimeoutMillis) {
+      if (socketTimeoutMillis < 0) {
+        throw new IllegalArgumentException("Socket timeout must not be negative.");
+      }
+      this.socketTimeoutMillis = socketTimeoutMillis;
+      return this;
+    }
+
+    /**
+     * Limit the time of a whole load, so that a server which trickles its
+     * response cannot block a loader thread. The limit is checked between
+     * reads, so a blocked read may exceed it by up to the socket timeout.
+     * 
+     * @param totalTimeoutMillis time limit in milliseconds including all
+     *          retries, by default two minutes. Zero for none.
+     * @throws IllegalArgumentException if {@code totalTimeoutMillis} is
+     *           negative
+     */
+    public Builder totalTimeoutMillis(long totalTimeoutMillis) {
+      if (totalTimeoutMillis < 0) {
+        throw new IllegalArgumentException("Total timeout must not be negative.");
+      }
+      this.totalTimeoutMillis = totalTimeoutMillis;
+      return this;
+    }
+
+    /**
+     * Retry loads which failed with an IO error, a 5xx server error or 429
+     * Too Many Requests. Retries are delayed by an exponential backoff with
+     * full jitter, unless the server sent a Retry-After header.
+     * 
+     * @param maxRetries maximum number of retries per load, by default 2.
+     *          Zero disables retries.
+     * @param retryDelayMillis cap of the random delay before the first retry
+     *          in milliseconds, which doubles with every further retry. By
+     *          default half a second.
+     * @param maxRetryDelayMillis longest delay before a retry in milliseconds,
+     *          by default 30 seconds. A server which asks to retry even later
+     *          is not retried.
+     * @throws IllegalArgumentException if a value is negative
+     */
+    public Builder retries(int maxRetries, long retryDelayMillis, long maxRetryDelayMillis) {
+      if (maxRetries < 0 || retryDelayMillis < 0 || maxRetryDelayMillis < 0) {
+        throw new IllegalArgumentException("Retry values must not be negative.");
+      }
+      this.maxRetries = maxRetries;
+      this.retryDelayMillis = retryDelayMillis;
+      this.maxRetryDelayMillis = maxRetryDelayMillis;
+      return this;
+    }
+
+    public RSSConfig build() {
+      return new RSSConfig(this);
+    }
+
+  }
+
+}
@@ -23,32 +23,119 @@ package org.mcsoxford.rss;
  */
 public class RSSFeed extends RSSBase {
 
-  private final java.util.List<RSSItem> items;
-	private java.util.Date lastBuildDate;
+  /**
+   * Default initial capacity of the item list.
+   */
+  static final int ITEM_CAPACITY = 16;
+
+  private final java.util.ArrayList<RSSItem> items;
+
+  /**
+   * Unmodifiable view of {@link #items} which supports random access.
+   */
+  private final java.util.List<RSSItem> itemsView;
+	private volatile String lastBuildDateText;
+	private long lastBuildDateTime = Dates.INVALID;
+	private volatile java.util.Date lastBuildDate;
 	private Integer ttl;
 
+  /**
+   * {@code true} if parsing stopped before the end of the document.
+   */
+  private boolean truncated;
+
+  /**
+   * Time until which the HTTP response may be cached, {@code Long.MIN_VALUE}
+   * if unknown.
+   */
+  private long expires = Dates.INVALID;
+
   RSSFeed() {
+    this(ITEM_CAPACITY);
+  }
+
+  /**
+   * @param itemCapacity expected number of RSS items
+   */
+  RSSFeed(int itemCapacity) {
     super(/* initial capacity for category names */ (byte) 3);
-    items = new java.util.LinkedList<RSSItem>();
+    items = new java.util.ArrayList<RSSItem>(itemCapacity);
+    itemsView = java.util.Collections.unmodifiableList(items);
   }
 
   /**
-   * Returns an unmodifiable list of RSS items.
+   * Returns an unmodifiable list of RSS items. The list supports constant time
+   * {@link java.util.List#get(int)}, and the same instance is returned on
+   * every call.
    */
   public java.util.List<RSSItem> getItems() {
-    return java.util.Collections.unmodifiableList(items);
+    return itemsView;
   }
 
   void addItem(RSSItem item) {
     items.add(item);
   }
 
+  /**
+   * Releases the unused capacity of the item list once parsing is done.
+   */
+  void trimItems() {
+    items.trimToSize();
+  }
+
 	void setLastBuildDate(java.util.Date date) {
+		lastBuildDateText = null;
+		lastBuildDateTime = date == null ? Dates.INVALID : date.getTime();
 		lastBuildDate = date;
 	}
 
+	/* Internal method for RSSHandler which stores the date as a primitive */
+	void setLastBuildDateTime(long time) {
+		lastBuildDateText = null;
+		lastBuildDateTime = time;
+		lastBuildDate = null;
+	}
+
+	/* Internal method for RSSHandler which defers parsing the date */
+	void setLastBuildDateText(String text) {
+		lastBuildDateText = text;
+		lastBuildDateTime = Dates.INVALID;
+		lastBuildDate = null;
+	}
+
+	/**
+	 * Returns the last build date or {@code null} if it is absent or invalid.
+	 * The Date object is created on first access.
+	 */
 	public java.util.Date getLastBuildDate() {
-		return lastBuildDate;
+		java.util.Date date = lastBuildDate;
+		if (date == null) {
+			final long time = getLastBuildDateTime();
+			if (time == Dates.INVALID) {
+				return null;
+			}
+
+			date = new java.util.Date(time);
+			lastBuildDate = date;
+		}
+
+		return date;
+	}
+
+	/**
+	 * Returns the last build date in milliseconds since the epoch without
+	 * creating a Date object.
+	 * 
+	 * @return milliseconds since the epoch, {@code Long.MIN_VALUE} if the date
+	 *         is absent or invalid
+	 */
+	public long getLastBuildDateTime() {
+		final String text = lastBuildDateText;
+		if (text != null) {
+			lastBuildDateTime = Dates.parseRfc822Millis(text);
+			lastBuildDateText = null;
+		}
+		return lastBuildDateTime;
 	}
 
 	void setTTL(Integer value) {
@@ -59,5 +146,31 @@ public class RSSFeed extends RSSBase {
 		return ttl;
 	}
 
+  /* Internal method for RSSHandler */
+  void setTruncated() {
+    truncated = true;
+  }
+
+  /**
+   * Returns {@code true} if the parser stopped early because of
+   * {@link RSSParseOptions}.
+   */
+  boolean isTruncated() {
+    return truncated;
+  }
+
+  /* Internal method for RSSReader */
+  void setExpires(long time) {
+    expires = time;
+  }
+
+  /**
+   * Returns the expiry time of the HTTP response from its Cache-Control or
+   * Expires header, {@code Long.MIN_VALUE} if unknown.
+   */
+  long getExpires() {
+    return expires;
+  }
+
 }
 
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe in-memory cache of parsed RSS feeds keyed by URI. The cache is
+ * bounded by the number of entries and by the estimated memory consumption of
+ * the cached feeds; the least recently used feeds are evicted first. A feed
+ * expires after the number of minutes given by its &lt;ttl&gt; element, if any.
+ * <p>
+ * Register the cache with {@link RSSReader#setFeedCache(RSSFeedCache)}. The
+ * same cache may be shared by several readers.
+ * <p>
+ * The cache hands out the same feed instance to every caller, so a feed must
+ * be complete when it is put in the cache and must not be modified afterwards.
+ *
+ * @author Mr Horn
+ */
+public final class RSSFeedCache {
+
+  /**
+   * Cached feed with its estimated size and expiry time.
+   */
+  private static final class Entry {
+
+    final RSSFeed feed;
+    final long size;
+
+    /** Milliseconds since the epoch, {@code Long.MAX_VALUE} if no TTL */
+    long expires;
+
+    Entry(RSSFeed feed, long size, long expires) {
+      this.feed = feed;
+      this.size = size;
+      this.expires = expires;
+    }
+
+  }
+
+  private final int maxEntries;
+  private final long maxBytes;
+
+  /** Iteration order is from least to most recently used */
+  private final LinkedHashMap<String, Entry> entries;
+
+  private long bytes;
+
+  /**
+   * Instantiate a cache which holds up to {@code maxEntries} feeds.
+   *
+   * @param maxEntries maximum number of cached feeds
+   */
+  public RSSFeedCache(int maxEntries) {
+    this(maxEntries, Long.MAX_VALUE);
+  }
+
+  /**
+   * Instantiate a cache which holds up to {@code maxEntries} feeds whose
+   * estimated total size does not exceed {@code maxBytes}.
+   *
+   * @param maxEntries maximum number of cached feeds
+   * @param maxBytes maximum estimated memory consumption of all cached feeds
+   * @throws IllegalArgumentException if either bound is not positive
+   */
+  public RSSFeedCache(int maxEntries, long maxBytes) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Maximum number of entries must be positive.");
+    } else if (maxBytes < 1) {
+      throw new IllegalArgumentException("Maximum size must be positive.");
+    }
+
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, /* access order */true);
+  }
+
+  /**
+   * Returns the cached feed of the URI or {@code null} if there is none or it
+   * has expired.
+   */
+  public synchronized RSSFeed get(String uri) {
+    final Entry entry = entries.get(uri);
+    if (entry == null) {
+      return null;
+    } else if (entry.expires <= System.currentTimeMillis()) {
+      remove(uri);
+      return null;
+    }
+
+    return entry.feed;
+  }
+
+  /**
+   * Returns the cached feed of the URI even if it has expired, and restarts its
+   * TTL. Used when the server has confirmed that the feed has not changed.
+   */
+  synchronized RSSFeed revalidate(String uri) {
+    final Entry entry = entries.get(uri);
+    if (entry == null) {
+      return null;
+    }
+
+    entry.expires = expires(entry.feed);
+    return entry.feed;
+  }
+
+  /**
+   * Caches the feed of the URI and evicts the least recently used feeds as
+   * necessary. Feeds which are larger than the cache are not cached at all.
+   */
+  public synchronized void put(String uri, RSSFeed feed) {
+    remove(uri);
+
+    final long size = estimateSize(feed);
+    if (size > maxBytes) {
+      return;
+    }
+
+    entries.put(uri, new Entry(feed, size, expires(feed)));
+    bytes += size;
+
+    final Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while (entries.size() > maxEntries || bytes > maxBytes) {
+      bytes -= eldest.next().getValue().size;
+      eldest.remove();
+    }
+  }
+
+  /**
+   * Removes the cached feed of the URI, if any.
+   */
+  public synchronized void remove(String uri) {
+    final Entry entry = entries.remove(uri);
+    if (entry != null) {
+      bytes -= entry.size;
+    }
+  }
+
+  /**
+   * Removes all cached feeds.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Returns the number of cached feeds, including expired ones which have not
+   * been removed yet.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private static long expires(RSSFeed feed) {
+    final Integer ttl = feed.getTTL();
+    if (ttl == null || ttl.intValue() <= 0) {
+      return Long.MAX_VALUE;
+    }
+
+    return System.currentTimeMillis() + ttl.intValue() * 60000L;
+  }
+
+  /**
+   * Estimates the number of bytes retained by the feed. Strings count two
+   * bytes per character plus a fixed object overhead.
+   */
+  static long estimateSize(RSSFeed feed) {
+    long size = estimateBaseSize(feed);
+    for (RSSItem item : feed.getItems()) {
+      size += estimateBaseSize(item) + estimateSize(item.getContent());
+      size += item.getThumbnails().size() * 96L;
+      if (item.getEnclosure() != null) {
+        size += 96L;
+      }
+    }
+
+    return size;
+  }
+
+  private static long estimateBaseSize(RSSBase base) {
+    long size = 64L;
+    size += estimateSize(base.getTitle());
+    size += estimateSize(base.getDescription());
+    size += estimateSize(base.getLinkString());
+    for (String category : base.getCategories()) {
+      size += estimateSize(category);
+    }
+    return size;
+  }
+
+  private static long estimateSize(String value) {
+    return value == null ? 0L : 40L + 2L * value.length();
+  }
+
+}
@@ -30,15 +30,33 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
   private static final String RSS_ITEM = "item";
 
   /**
-   * Constant symbol table to ensure efficient treatment of handler states.
+   * Names of the supported XML elements, indexed by {@link #TABLE}.
+   */
+  private static final String[] ELEMENTS = { "title", "description", "content:encoded", "link",
+      "category", "pubDate", "media:thumbnail", "lastBuildDate", "ttl", "enclosure", RSS_ITEM };
+
+  /**
+   * Immutable lookup of element names which is shared by all SAX handlers.
+   */
+  private static final ElementTable TABLE = new ElementTable(ELEMENTS);
+
+  /**
+   * Constant symbol table to ensure efficient treatment of handler states,
+   * {@code null} unless {@link RSSConfig#DISPATCH_HASH} is configured.
    */
   private final java.util.Map<String, Setter> setters;
 
+  /**
+   * Setters indexed by the position of their element in {@link #ELEMENTS},
+   * {@code null} unless {@link RSSConfig#DISPATCH_PERFECT_HASH} is configured.
+   */
+  private final Setter[] elementSetters;
+
   /**
    * Reference is never {@code null}. Visibility must be package-private to
    * ensure efficiency of inner classes.
    */
-  final RSSFeed feed = new RSSFeed();
+  final RSSFeed feed;
 
   /**
    * Reference is {@code null} unless started to parse &lt;item&gt; element.
@@ -47,9 +65,33 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
   RSSItem item;
 
   /**
-   * If not {@code null}, then buffer the characters inside an XML text element.
+   * Initial capacity of {@link #buffer}.
    */
-  private StringBuilder buffer;
+  private static final int BUFFER_CAPACITY = 256;
+
+  /**
+   * Largest capacity of {@link #buffer} which is kept for the next element.
+   * Larger buffers, e.g. after a long &lt;content:encoded&gt; body, are
+   * released so that a handler does not retain them.
+   */
+  private static final int MAX_BUFFER_CAPACITY = 16 * 1024;
+
+  /**
+   * Reusable buffer for the characters inside an XML text element. It is
+   * cleared at the start of each such element.
+   */
+  private StringBuilder buffer = new StringBuilder(BUFFER_CAPACITY);
+
+  /**
+   * If {@code true}, then buffer the characters inside an XML text element.
+   */
+  private boolean buffering;
+
+  /**
+   * Deduplicates repeated category names within a feed, {@code null} if
+   * disabled.
+   */
+  private final StringTable categories;
 
   /**
    * Dispatcher to set either {@link #feed} or {@link #item} fields.
@@ -61,15 +103,21 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
    */
   private static interface Setter {}
 
+  /**
+   * Marker which is dispatched for &lt;item&gt; elements.
+   */
+  private static final Setter START_ITEM = new Setter() {};
+
   /**
    * Closure to change fields in POJOs which store RSS content.
    */
   private static interface ContentSetter extends Setter {
 
     /**
-     * Set the field of an object which represents an RSS element.
+     * Set the field of an object which represents an RSS element. The
+     * characters are only valid until this method returns.
      */
-    void set(String value);
+    void set(CharSequence value);
 
   }
 
@@ -94,11 +142,11 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
    */
   private final Setter SET_TITLE = new ContentSetter() {
     @Override
-    public void set(String title) {
+    public void set(CharSequence title) {
       if (item == null) {
-        feed.setTitle(title);
+        feed.setTitle(title.toString());
       } else {
-        item.setTitle(title);
+        item.setTitle(title.toString());
       }
     }
   };
@@ -111,11 +159,11 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
    */
   private final Setter SET_DESCRIPTION = new ContentSetter() {
     @Override
-    public void set(String description) {
+    public void set(CharSequence description) {
       if (item == null) {
-        feed.setDescription(description);
+        feed.setDescription(description.toString());
       } else {
-        item.setDescription(description);
+        item.setDescription(description.toString());
       }
     }
   };
@@ -126,9 +174,9 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
    */
   private final Setter SET_CONTENT = new ContentSetter() {
     @Override
-    public void set(String content) {
+    public void set(CharSequence content) {
       if (item != null) {
-        item.setContent(content);
+        item.setContent(content.toString());
       }
     }
   };
@@ -141,12 +189,12 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
    */
   private final Setter SET_LINK = new ContentSetter() {
     @Override
-    public void set(String link) {
-      final android.net.Uri uri = android.net.Uri.parse(link);
+    public void set(CharSequence link) {
+      // the link is parsed on first access
       if (item == null) {
-        feed.setLink(uri);
+        feed.setLinkString(link.toString());
       } else {
-        item.setLink(uri);
+        item.setLinkString(link.toString());
       }
     }
   };
@@ -155,31 +203,46 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
    * Setter for RSS &lt;pubDate&gt; elements inside a &lt;channel&gt; or an
    * &lt;item&gt; element. The title of the RSS feed is set only if
    * {@link #item} is {@code null}. Otherwise, the title of the RSS
-   * {@link #item} is set.
+   * {@link #item} is set. The date is stored as milliseconds, or as text
+   * which is parsed on access if lazy dates are configured. Invalid dates are
+   * ignored.
    */
   private final Setter SET_PUBDATE = new ContentSetter() {
     @Override
-    public void set(String pubDate) {
-      final java.util.Date date = Dates.parseRfc822(pubDate);
-      if (item == null) {
-        feed.setPubDate(date);
-      } else {
-        item.setPubDate(date);
+    public void set(CharSequence pubDate) {
+      final RSSBase base = item == null ? feed : item;
+      if (config.lazyDates) {
+        base.setPubDateText(pubDate.toString());
+        return;
+      }
+
+      final long time = Dates.parseRfc822Millis(pubDate);
+      if (time != Dates.INVALID) {
+        base.setPubDateTime(time);
       }
     }
   };
 
 	/**
 	 * Setter for RSS &lt;lastBuildDate&gt; elements inside a &lt;channel&gt;.
+	 * Stored like &lt;pubDate&gt; elements. Invalid dates are ignored.
 	 */
 	private final Setter SET_LAST_BUILE_DATE = new ContentSetter() {
 		@Override
-		public void set(String pubDate) {
-			final java.util.Date date = Dates.parseRfc822(pubDate);
-			if (item == null) {
-				feed.setLastBuildDate(date);
-			} else {
+		public void set(CharSequence pubDate) {
+			if (item != null) {
 				// Ignore invalid elements which are inside item elements.
+				return;
+			}
+
+			if (config.lazyDates) {
+				feed.setLastBuildDateText(pubDate.toString());
+				return;
+			}
+
+			final long time = Dates.parseRfc822Millis(pubDate);
+			if (time != Dates.INVALID) {
+				feed.setLastBuildDateTime(time);
 			}
 		}
 	};
@@ -189,8 +252,8 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
 	 */
 	private final Setter SET_TTL = new ContentSetter() {
 		@Override
-		public void set(String ttl) {
-			final Integer value = Integers.parseInteger(ttl);
+		public void set(CharSequence ttl) {
+			final Integer value = Integers.parseInteger(ttl.toString());
 			if (item == null) {
 				feed.setTTL(value);
 			} else {
@@ -208,7 +271,15 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
   private final Setter ADD_CATEGORY = new ContentSetter() {
 
     @Override
-    public void set(String category) {
+    public void set(CharSequence chars) {
+      final String category;
+      if (config.stringPool != null) {
+        category = config.stringPool.intern(chars);
+      } else if (categories != null) {
+        category = categories.get(chars);
+      } else {
+        category = chars.toString();
+      }
       if (item == null) {
         feed.addCategory(category);
       } else {
@@ -246,7 +317,7 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
         return;
       }
 
-      item.addThumbnail(new MediaThumbnail(android.net.Uri.parse(url), height, width));
+      item.addThumbnail(new MediaThumbnail(url, height, width));
     }
 
   };
@@ -277,8 +348,8 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
 				return;
 			}
 
-			MediaEnclosure enclosure = new MediaEnclosure(
-					android.net.Uri.parse(url), length, mimeType);
+			MediaEnclosure enclosure = new MediaEnclosure(url, length,
+					mimeType);
 			item.setEnclosure(enclosure);
 		}
 	};
@@ -288,26 +359,137 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
    */
   private final RSSConfig config;
 
+  /**
+   * Receives each parsed RSS item, {@code null} to add all items to the feed.
+   */
+  private final RSSItemListener listener;
+
+  /**
+   * Limits after which parsing stops, never {@code null}.
+   */
+  private final RSSParseOptions options;
+
+  /**
+   * Number of RSS items which have been parsed within the limits.
+   */
+  private int itemCount;
+
+  /**
+   * Thrown to abort the SAX parser once a limit of the {@link RSSParseOptions}
+   * has been reached.
+   */
+  static final class StopParsingException extends org.xml.sax.SAXException {
+
+    /**
+     * Unsupported serialization
+     */
+    private static final long serialVersionUID = 1L;
+
+    StopParsingException() {
+      super("RSS parse limit reached");
+    }
+
+  }
+
+  /**
+   * Options without limits.
+   */
+  private static final RSSParseOptions UNLIMITED = new RSSParseOptions(0, null);
+
   /**
    * Instantiate a SAX handler which can parse a subset of RSS 2.0 feeds.
    * 
    * @param config configuration for the initial capacities of collections
    */
   RSSHandler(RSSConfig config) {
+    this(config, null, null);
+  }
+
+  /**
+   * Instantiate a SAX handler which passes each RSS item to a listener as soon
+   * as it has been parsed.
+   * 
+   * @param config configuration for the initial capacities of collections
+   * @param listener decides whether an RSS item is added to the feed, may be
+   *          {@code null}
+   * @param options limits after which parsing stops, may be {@code null}
+   */
+  RSSHandler(RSSConfig config, RSSItemListener listener, RSSParseOptions options) {
+    this(config, listener, options, RSSFeed.ITEM_CAPACITY);
+  }
+
+  /**
+   * Instantiate a SAX handler whose RSS feed is presized for the specified
+   * number of items.
+   * 
+   * @param config configuration for the initial capacities of collections
+   * @param listener decides whether an RSS item is added to the feed, may be
+   *          {@code null}
+   * @param options limits after which parsing stops, may be {@code null}
+   * @param itemCapacity expected number of RSS items
+   */
+  RSSHandler(RSSConfig config, RSSItemListener listener, RSSParseOptions options, int itemCapacity) {
+    this.feed = new RSSFeed(itemCapacity);
     this.config = config;
+    this.listener = listener;
+    this.options = options == null ? UNLIMITED : options;
+    this.categories = config.deduplicate && config.stringPool == null ? new StringTable() : null;
 
     // initialize dispatchers to manage the state of the SAX handler
-    setters = new java.util.HashMap<String, Setter>(/* 2^3 */16);
-    setters.put("title", SET_TITLE);
-    setters.put("description", SET_DESCRIPTION);
-    setters.put("content:encoded", SET_CONTENT);
-    setters.put("link", SET_LINK);
-    setters.put("category", ADD_CATEGORY);
-    setters.put("pubDate", SET_PUBDATE);
-    setters.put("media:thumbnail", ADD_MEDIA_THUMBNAIL);
-    setters.put("lastBuildDate", SET_LAST_BUILE_DATE);
-    setters.put("ttl", SET_TTL);
-    setters.put("enclosure", SET_ENCLOSURE);
+    if (config.dispatch == RSSConfig.DISPATCH_PERFECT_HASH) {
+      setters = null;
+      elementSetters = new Setter[ELEMENTS.length];
+    } else {
+      setters = new java.util.HashMap<String, Setter>(/* 2^3 */16);
+      elementSetters = null;
+    }
+
+    put(RSS_ITEM, START_ITEM);
+    register(RSSConfig.FIELD_TITLE, "title", SET_TITLE);
+    register(RSSConfig.FIELD_DESCRIPTION, "description", SET_DESCRIPTION);
+    register(RSSConfig.FIELD_CONTENT, "content:encoded", SET_CONTENT);
+    register(RSSConfig.FIELD_LINK, "link", SET_LINK);
+    register(RSSConfig.FIELD_CATEGORIES, "category", ADD_CATEGORY);
+    register(RSSConfig.FIELD_THUMBNAILS, "media:thumbnail", ADD_MEDIA_THUMBNAIL);
+    register(RSSConfig.FIELD_LAST_BUILD_DATE, "lastBuildDate", SET_LAST_BUILE_DATE);
+    register(RSSConfig.FIELD_TTL, "ttl", SET_TTL);
+    register(RSSConfig.FIELD_ENCLOSURE, "enclosure", SET_ENCLOSURE);
+
+    // the watermark needs the publication date even if it is not requested
+    if (config.hasField(RSSConfig.FIELD_PUBDATE) || this.options.watermark != Long.MIN_VALUE) {
+      put("pubDate", SET_PUBDATE);
+    }
+  }
+
+  /**
+   * Dispatch the specified element only if its field has been requested, so
+   * that the character data of all other elements is never buffered.
+   */
+  private void register(int field, String qname, Setter setter) {
+    if (config.hasField(field)) {
+      put(qname, setter);
+    }
+  }
+
+  private void put(String qname, Setter setter) {
+    if (setters == null) {
+      elementSetters[TABLE.get(qname)] = setter;
+    } else {
+      setters.put(qname, setter);
+    }
+  }
+
+  /**
+   * Returns the dispatcher of the specified element, or {@code null} if the
+   * element is not supported or not requested.
+   */
+  private Setter lookup(String qname) {
+    if (setters != null) {
+      return setters.get(qname);
+    }
+
+    final int index = TABLE.get(qname);
+    return index == ElementTable.NONE ? null : elementSetters[index];
   }
 
   /**
@@ -320,34 +502,59 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
   /**
    * Identify the appropriate dispatcher which should be used to store XML data
    * in a POJO. Unsupported RSS 2.0 elements are currently ignored.
+   * 
+   * @throws StopParsingException if an RSS item beyond the maximum number of
+   *           items starts
    */
   @Override
   public void startElement(String nsURI, String localName, String qname,
-      org.xml.sax.Attributes attributes) {
+      org.xml.sax.Attributes attributes) throws StopParsingException {
     // Lookup dispatcher in hash table
-    setter = setters.get(qname);
+    setter = lookup(qname);
     if (setter == null) {
-      if (RSS_ITEM.equals(qname)) {
-        item = new RSSItem(config.categoryAvg, config.thumbnailAvg);
+      // unsupported element
+    } else if (setter == START_ITEM) {
+      // a feed with exactly the maximum number of items is complete
+      if (itemCount >= options.maxItems) {
+        stop();
       }
+      item = new RSSItem(config.categoryAvg, config.thumbnailAvg);
     } else if (setter instanceof AttributeSetter) {
       ((AttributeSetter) setter).set(attributes);
     } else {
       // Buffer supported RSS content data
-      buffer = new StringBuilder();
+      buffer.setLength(0);
+      buffering = true;
     }
   }
 
+  /**
+   * Stores buffered XML data in a POJO or completes an RSS item.
+   * 
+   * @throws StopParsingException if a limit of the {@link RSSParseOptions} has
+   *           been reached
+   */
   @Override
-  public void endElement(String nsURI, String localName, String qname) {
+  public void endElement(String nsURI, String localName, String qname) throws StopParsingException {
     if (isBuffering()) {
       // set field of an RSS feed or RSS item
-      ((ContentSetter) setter).set(buffer.toString());
+      ((ContentSetter) setter).set(buffer);
 
-      // clear buffer
-      buffer = null;
+      // stop buffering and release an oversized buffer
+      buffering = false;
+      if (buffer.capacity() > MAX_BUFFER_CAPACITY) {
+        buffer = new StringBuilder(BUFFER_CAPACITY);
+      }
     } else if (RSS_ITEM.equals(qname)) {
-      feed.addItem(item);
+      if (isOlderThanWatermark(item)) {
+        stop();
+      }
+
+      if (listener == null || listener.onItem(feed, item)) {
+        feed.addItem(item);
+      }
+
+      itemCount++;
 
       // (re)enter <channel> scope
       item = null;
@@ -361,6 +568,21 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
     }
   }
 
+  private boolean isOlderThanWatermark(RSSItem item) {
+    if (options.watermark == Long.MIN_VALUE) {
+      return false;
+    }
+
+    final long time = item.getPubDateTime();
+    return time != Dates.INVALID && time < options.watermark;
+  }
+
+  private void stop() throws StopParsingException {
+    feed.setTruncated();
+    item = null;
+    throw new StopParsingException();
+  }
+
   /**
    * Determines if the SAX parser is ready to receive data inside an XML element
    * such as &lt;title&gt; or &lt;description&gt;.
@@ -369,7 +591,7 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
    *         element, {@code false} otherwise
    */
   boolean isBuffering() {
-    return buffer != null && setter != null;
+    return buffering && setter != null;
   }
 
 }
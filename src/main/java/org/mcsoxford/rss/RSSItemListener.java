@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Callback which receives each RSS item as soon as its closing &lt;item&gt;
+ * tag has been parsed. Discarding items keeps memory consumption constant
+ * regardless of the size of the RSS feed.
+ * 
+ * @author Mr Horn
+ * @see RSSParser#parse(java.io.InputStream, RSSItemListener)
+ */
+public interface RSSItemListener {
+
+  /**
+   * Receives a completely parsed RSS item. The RSS feed contains the channel
+   * elements and retained items which precede the item in the document.
+   * 
+   * @param feed RSS feed which is being parsed
+   * @param item RSS item which has just been parsed
+   * @return {@code true} to add the item to the RSS feed, {@code false} to
+   *         discard it
+   */
+  boolean onItem(RSSFeed feed, RSSItem item);
+
+}
@@ -17,9 +17,12 @@ package org.mcsoxford.rss;
 
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -33,6 +36,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <li>{@link #fifo(int)}</li>
  * <li>{@link #priority()}</li>
  * <li>{@link #priority(int)}</li>
+ * <li>{@link #fifo(int, int)}</li>
+ * <li>{@link #priority(int, int)}</li>
+ * <li>{@link #fifo(int, int, int)}</li>
+ * <li>{@link #priority(int, int, int)}</li>
+ * <li>{@link #fifo(Executor, int)}</li>
+ * <li>{@link #priority(Executor, int)}</li>
  * </ul>
  * 
  * Completed RSS feed loads can be retrieved with {@link RSSLoader#take()},
@@ -90,6 +99,11 @@ public class RSSLoader {
    */
   private boolean stopped;
 
+  /**
+   * Number of worker threads which have not yet encountered the sentinel.
+   */
+  private final AtomicInteger running;
+
   /**
    * Create an object which can load RSS feeds asynchronously in FIFO order.
    * 
@@ -128,6 +142,101 @@ public class RSSLoader {
     return new RSSLoader(new PriorityBlockingQueue<RSSFuture>(capacity));
   }
 
+  /**
+   * Create an object which loads RSS feeds asynchronously in FIFO order with
+   * several worker threads. RSS feeds are dequeued in FIFO order, but a slow
+   * server only delays the worker which is loading its RSS feed.
+   * 
+   * @param capacity
+   *          expected number of URIs to be loaded at a given time
+   * @param workers
+   *          number of threads which load RSS feeds concurrently
+   */
+  public static RSSLoader fifo(int capacity, int workers) {
+    return new RSSLoader(new LinkedBlockingQueue<RSSFuture>(capacity), workers);
+  }
+
+  /**
+   * Create an object which loads RSS feeds asynchronously based on priority
+   * with several worker threads. Each idle worker dequeues the RSS feed with the
+   * highest priority. Since loads run concurrently, results may complete in a
+   * different order.
+   * 
+   * @param capacity
+   *          expected number of URIs to be loaded at a given time
+   * @param workers
+   *          number of threads which load RSS feeds concurrently
+   */
+  public static RSSLoader priority(int capacity, int workers) {
+    return new RSSLoader(new PriorityBlockingQueue<RSSFuture>(capacity), workers);
+  }
+
+  /**
+   * Create an object which loads RSS feeds asynchronously in FIFO order with
+   * several worker threads, but at most {@code hostLimit} RSS feeds from the
+   * same host at a time. Hosts take turns so that many feeds on one host do not
+   * keep the workers from loading feeds on other hosts.
+   * 
+   * @param capacity
+   *          maximum number of URIs waiting to be loaded
+   * @param workers
+   *          number of threads which load RSS feeds concurrently
+   * @param hostLimit
+   *          maximum number of concurrent loads from the same host
+   */
+  public static RSSLoader fifo(int capacity, int workers, int hostLimit) {
+    return new RSSLoader(new HostQueue(capacity, hostLimit, /* priority */false), workers);
+  }
+
+  /**
+   * Create an object which loads RSS feeds asynchronously based on priority
+   * with several worker threads, but at most {@code hostLimit} RSS feeds from
+   * the same host at a time. An idle worker loads the RSS feed with the highest
+   * priority among the hosts below their limit; hosts take turns among equal
+   * priorities.
+   * 
+   * @param capacity
+   *          maximum number of URIs waiting to be loaded
+   * @param workers
+   *          number of threads which load RSS feeds concurrently
+   * @param hostLimit
+   *          maximum number of concurrent loads from the same host
+   */
+  public static RSSLoader priority(int capacity, int workers, int hostLimit) {
+    return new RSSLoader(new HostQueue(capacity, hostLimit, /* priority */true), workers);
+  }
+
+  /**
+   * Create an object which loads RSS feeds asynchronously in FIFO order by
+   * running each load as a separate task on the specified {@link Executor}. On
+   * runtimes with virtual threads, an executor which starts a virtual thread
+   * per task allows thousands of concurrent loads without as many OS threads.
+   * 
+   * @param executor
+   *          executes each RSS feed load as a separate task
+   * @param concurrency
+   *          maximum number of RSS feeds loaded at the same time
+   */
+  public static RSSLoader fifo(Executor executor, int concurrency) {
+    return new RSSLoader(new LinkedBlockingQueue<RSSFuture>(), executor, concurrency);
+  }
+
+  /**
+   * Create an object which loads RSS feeds asynchronously based on priority by
+   * running each load as a separate task on the specified {@link Executor}.
+   * Whenever fewer than {@code concurrency} loads are in flight, the RSS feed
+   * with the highest priority is dispatched next.
+   * 
+   * @param executor
+   *          executes each RSS feed load as a separate task
+   * @param concurrency
+   *          maximum number of RSS feeds loaded at the same time
+   * @see #fifo(Executor, int)
+   */
+  public static RSSLoader priority(Executor executor, int concurrency) {
+    return new RSSLoader(new PriorityBlockingQueue<RSSFuture>(), executor, concurrency);
+  }
+
   /**
    * Instantiate an object which can load RSS feeds asynchronously. The provided
    * {@link BlockingQueue} implementation determines the load behaviour.
@@ -136,11 +245,58 @@ public class RSSLoader {
    * @see PriorityBlockingQueue
    */
   RSSLoader(BlockingQueue<RSSFuture> in) {
+    this(in, 1);
+  }
+
+  /**
+   * Instantiate an object which loads RSS feeds asynchronously with the
+   * specified number of worker threads. All workers dequeue from the same
+   * {@link BlockingQueue} implementation which determines the load behaviour.
+   * 
+   * @throws IllegalArgumentException if {@code workers} is not positive
+   */
+  RSSLoader(BlockingQueue<RSSFuture> in, int workers) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Number of workers must be positive.");
+    }
+
+    this.in = in;
+    this.out = new LinkedBlockingQueue<RSSFuture>();
+    this.running = new AtomicInteger(workers);
+
+    // start separate threads for loading of RSS feeds; the workers share one
+    // pool of connections so that any worker can reuse a kept-alive connection
+    final RSSReader reader = new RSSReader(new RSSConfig.Builder().maxConnections(workers)
+        .maxConnectionsPerRoute(workers).build());
+    final AtomicInteger users = new AtomicInteger(workers);
+    for (int i = 0; i < workers; i++) {
+      final String name = workers == 1 ? DEFAULT_THREAD_NAME : DEFAULT_THREAD_NAME + " #" + (i + 1);
+      new Thread(new Loader(reader, users), name).start();
+    }
+  }
+
+  /**
+   * Instantiate an object which loads RSS feeds asynchronously as tasks on the
+   * specified {@link Executor}. A single dispatcher thread dequeues from the
+   * {@link BlockingQueue} implementation which determines the load behaviour.
+   * All tasks share one RSSReader with a thread-safe HTTP client.
+   * 
+   * @throws IllegalArgumentException if {@code concurrency} is not positive
+   */
+  RSSLoader(BlockingQueue<RSSFuture> in, Executor executor, int concurrency) {
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor must not be null.");
+    } else if (concurrency < 1) {
+      throw new IllegalArgumentException("Concurrency must be positive.");
+    }
+
     this.in = in;
     this.out = new LinkedBlockingQueue<RSSFuture>();
+    this.running = new AtomicInteger(1);
 
-    // start separate thread for loading of RSS feeds
-    new Thread(new Loader(new RSSReader()), DEFAULT_THREAD_NAME).start();
+    final RSSReader reader = new RSSReader(new RSSConfig.Builder().maxConnections(concurrency)
+        .maxConnectionsPerRoute(concurrency).build());
+    new Thread(new Dispatcher(reader, executor, concurrency), DEFAULT_THREAD_NAME).start();
   }
 
   /**
@@ -153,7 +309,7 @@ public class RSSLoader {
   }
 
   /**
-   * Stop thread after finishing loading pending RSS feed URIs. If this loader
+   * Stop threads after finishing loading pending RSS feed URIs. If this loader
    * has been constructed with {@link #priority()} or {@link #priority(int)},
    * only RSS feed loads with priority strictly greater than seven (7) are going
    * to be completed.
@@ -167,6 +323,14 @@ public class RSSLoader {
     in.offer(SENTINEL);
   }
 
+  /**
+   * Returns {@code true} once {@link #stop()} has been called. After a load
+   * has been refused, this tells a stopped loader from a full one.
+   */
+  boolean isStopped() {
+    return stopped;
+  }
+
   /**
    * Loads the specified RSS feed URI asynchronously. If this loader has been
    * constructed with {@link #priority()} or {@link #priority(int)}, then a
@@ -234,7 +398,8 @@ public class RSSLoader {
 
   /**
    * Retrieves and removes the next Future representing the result of loading an
-   * RSS feed, waiting if none are yet present.
+   * RSS feed, waiting if none are yet present. Failed loads are retrieved too;
+   * their {@link Future#get()} throws an {@link ExecutionException}.
    * 
    * @return the {@link Future} representing the loaded RSS feed
    * 
@@ -278,6 +443,39 @@ public class RSSLoader {
     return out.poll(timeout, unit);
   }
 
+  /**
+   * Loads the RSS feed of a dequeued task unless the task has been cancelled.
+   * The outcome is reported through the task itself.
+   */
+  void load(RSSReader reader, RSSFuture future) {
+    if (future.status.compareAndSet(RSSFuture.READY, RSSFuture.LOADING)) {
+      try {
+        // perform loading outside of locked region
+        final RSSFeed feed = reader.load(future.uri, future.loadConfig);
+
+        // set successfully loaded RSS feed
+        future.set(feed, /* error */null);
+      } catch (RSSException e) {
+        // throw ExecutionException when calling RSSFuture::get()
+        future.set(/* feed */null, e);
+      } catch (RSSFault e) {
+        // throw ExecutionException when calling RSSFuture::get()
+        future.set(/* feed */null, e);
+      } finally {
+        // RSSFuture::isDone() returns true even if an error occurred
+        future.status.compareAndSet(RSSFuture.LOADING, RSSFuture.LOADED);
+      }
+
+      // enable caller to consume the loaded RSS feed or the error
+      out.add(future);
+    }
+
+    if (in instanceof HostQueue) {
+      // allow the next load from the same host, even if cancelled
+      ((HostQueue) in).release(future);
+    }
+  }
+
   /**
    * Internal consumer of RSS feed URIs stored in the blocking queue.
    */
@@ -285,54 +483,119 @@ public class RSSLoader {
 
     private final RSSReader reader;
 
-    Loader(RSSReader reader) {
+    /** Number of workers which have not yet released the shared reader */
+    private final AtomicInteger users;
+
+    Loader(RSSReader reader, AtomicInteger users) {
       this.reader = reader;
+      this.users = users;
     }
 
     /**
      * Keep on loading RSS feeds by dequeuing incoming tasks until the sentinel
-     * is encountered.
+     * is encountered. The sentinel is passed on to the remaining workers.
      */
     @Override
     public void run() {
       try {
         RSSFuture future = null;
-        RSSFeed feed;
         while ((future = in.take()) != SENTINEL) {
+          load(reader, future);
+        }
 
-          if (future.status.compareAndSet(RSSFuture.READY, RSSFuture.LOADING)) {
-            try {
-              // perform loading outside of locked region
-              feed = reader.load(future.uri, future.loadConfig);
-
-              // set successfully loaded RSS feed
-              future.set(feed, /* error */null);
-
-              // enable caller to consume the loaded RSS feed
-              out.add(future);
-            } catch (RSSException e) {
-              // throw ExecutionException when calling RSSFuture::get()
-              future.set(/* feed */null, e);
-            } catch (RSSFault e) {
-              // throw ExecutionException when calling RSSFuture::get()
-              future.set(/* feed */null, e);
-            } finally {
-              // RSSFuture::isDone() returns true even if an error occurred
-              future.status.compareAndSet(RSSFuture.LOADING, RSSFuture.LOADED);
-            }
+        // the last worker to stop must not block on a full queue
+        if (running.decrementAndGet() > 0) {
+          in.put(SENTINEL);
+        }
+      } catch (InterruptedException e) {
+        // Restore the interrupted status
+        Thread.currentThread().interrupt();
+      } finally {
+        if (users.decrementAndGet() == 0) {
+          reader.close();
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Internal consumer of RSS feed URIs which hands each dequeued task to an
+   * {@link Executor}. At most {@code concurrency} tasks are in flight; further
+   * tasks stay on the queue so that their priority is still taken into account.
+   */
+  class Dispatcher implements Runnable {
+
+    private final RSSReader reader;
+    private final Executor executor;
+    private final int concurrency;
+    private final Semaphore permits;
+
+    Dispatcher(RSSReader reader, Executor executor, int concurrency) {
+      this.reader = reader;
+      this.executor = executor;
+      this.concurrency = concurrency;
+      this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Keep on dispatching RSS feeds by dequeuing incoming tasks until the
+     * sentinel is encountered. The shared RSSReader is released once all
+     * dispatched tasks have completed.
+     */
+    @Override
+    public void run() {
+      try {
+        RSSFuture future = null;
+        while (true) {
+          // wait for a free slot before dequeuing the next task
+          permits.acquire();
+          future = in.take();
+          if (future == SENTINEL) {
+            permits.release();
+            break;
           }
 
+          dispatch(future);
         }
+
+        // wait for all in-flight tasks
+        permits.acquire(concurrency);
       } catch (InterruptedException e) {
         // Restore the interrupted status
         Thread.currentThread().interrupt();
+      } finally {
+        reader.close();
+      }
+    }
+
+    private void dispatch(final RSSFuture future) {
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              load(reader, future);
+            } finally {
+              permits.release();
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        permits.release();
+        if (future.status.compareAndSet(RSSFuture.READY, RSSFuture.LOADING)) {
+          // throw ExecutionException when calling RSSFuture::get()
+          future.set(/* feed */null, new RSSFault(e));
+          future.status.compareAndSet(RSSFuture.LOADING, RSSFuture.LOADED);
+          out.add(future);
+        }
       }
     }
 
   }
 
   /**
-   * Internal sentinel to stop the thread that is loading RSS feeds.
+   * Internal sentinel to stop the threads that are loading RSS feeds.
    */
   private final static RSSFuture SENTINEL = new RSSFuture(null, /* invalid config */-1, /* priority */7);
 
@@ -360,6 +623,9 @@ public class RSSLoader {
     RSSFeed feed;
     Exception cause;
 
+    /** Guarded by this, {@code true} once {@link #set} has been called */
+    boolean completed;
+
     RSSFuture(String uri, int loadConfig, int priority) {
       this.uri = uri;
       this.loadConfig = loadConfig;
@@ -384,7 +650,7 @@ public class RSSLoader {
 
     @Override
     public synchronized RSSFeed get() throws InterruptedException, ExecutionException {
-      if (feed == null && cause == null) {
+      if (!completed) {
         try {
           waiting = true;
 
@@ -408,7 +674,7 @@ public class RSSLoader {
     public synchronized RSSFeed get(long timeout, TimeUnit unit)
         throws InterruptedException, ExecutionException, TimeoutException {
 
-      if (feed == null && cause == null) {
+      if (!completed) {
         try {
           waiting = true;
 
@@ -439,6 +705,7 @@ public class RSSLoader {
     synchronized void set(RSSFeed feed, Exception cause) {
       this.feed = feed;
       this.cause = cause;
+      this.completed = true;
 
       if (waiting) {
         waiting = false;
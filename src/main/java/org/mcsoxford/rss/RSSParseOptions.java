@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Immutable options which let the RSS parser stop early. Since RSS feeds
+ * usually list their newest items first, a client which polls a feed often
+ * only needs the first few items or the items newer than those it already
+ * has. The rest of the document is then neither parsed nor downloaded.
+ * 
+ * @author Mr Horn
+ */
+public final class RSSParseOptions {
+
+  /**
+   * Maximum number of RSS items, {@code Integer.MAX_VALUE} if unlimited.
+   */
+  final int maxItems;
+
+  /**
+   * Milliseconds since the epoch, {@code Long.MIN_VALUE} if unlimited.
+   */
+  final long watermark;
+
+  /**
+   * Instantiate parse options with the specified limits.
+   * 
+   * @param maxItems stop parsing after this number of RSS items, zero or a
+   *          negative number for no limit
+   * @param watermark stop parsing at the first RSS item whose publication date
+   *          is older than this date, {@code null} for no limit. Items without
+   *          a valid publication date never stop the parser.
+   */
+  public RSSParseOptions(int maxItems, java.util.Date watermark) {
+    this.maxItems = maxItems > 0 ? maxItems : Integer.MAX_VALUE;
+    this.watermark = watermark == null ? Long.MIN_VALUE : watermark.getTime();
+  }
+
+}
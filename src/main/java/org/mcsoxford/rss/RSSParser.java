@@ -18,6 +18,8 @@ package org.mcsoxford.rss;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -26,16 +28,53 @@ import javax.xml.parsers.SAXParserFactory;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
- * Thread-safe RSS parser SPI implementation.
+ * Thread-safe RSS parser SPI implementation. SAX parsers are reset and reused
+ * across calls because creating them is expensive compared to parsing small
+ * feeds.
  * 
  * @author Mr Horn
  */
 public class RSSParser implements RSSParserSPI {
 
+  /**
+   * Maximum number of idle SAX parsers which are kept for reuse.
+   */
+  private static final int POOL_SIZE = 8;
+
+  /**
+   * Content handler which is installed while a SAX parser is idle so that the
+   * pool does not retain parsed feeds.
+   */
+  private static final DefaultHandler IDLE_HANDLER = new DefaultHandler();
+
   private final RSSConfig config;
 
+  /**
+   * Upper bound of the item capacity which is estimated from previous feeds.
+   */
+  private static final int MAX_ITEM_CAPACITY = 64;
+
+  /**
+   * Number of RSS items of the last completely parsed feed, which presizes the
+   * item list of the next one unless the configuration specifies a capacity.
+   * The parser is shared by all feeds of a reader, so this is only a hint.
+   */
+  private volatile int lastItemCount;
+
+  /**
+   * Idle SAX parsers. Each parser is used by at most one thread at a time.
+   */
+  private final BlockingQueue<SAXParser> parsers = new ArrayBlockingQueue<SAXParser>(POOL_SIZE);
+
+  /**
+   * Lazily created factory. Since SAXParserFactory implementations are not
+   * guaranteed to be thread-safe, access is synchronized on this parser.
+   */
+  private SAXParserFactory factory;
+
   public RSSParser(RSSConfig config) {
     this.config = config;
   }
@@ -50,18 +89,67 @@ public class RSSParser implements RSSParserSPI {
    */
   @Override
   public RSSFeed parse(InputStream feed) {
+    return parse(feed, /* listener */null, /* options */null);
+  }
+
+  /**
+   * Parses input stream as RSS feed, but stops as soon as one of the limits in
+   * the options is reached. The rest of the stream is not read. It is the
+   * responsibility of the caller to close the RSS feed input stream.
+   * 
+   * @param feed RSS 2.0 feed input stream
+   * @param options limits for the parser, {@code null} for none
+   * @return in-memory representation of RSS feed up to the limit
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  public RSSFeed parse(InputStream feed, RSSParseOptions options) {
+    return parse(feed, /* listener */null, options);
+  }
+
+  /**
+   * Parses input stream as RSS feed and passes each RSS item to the listener
+   * as soon as it has been parsed. Only the items which the listener accepts
+   * are added to the returned RSS feed. It is the responsibility of the caller
+   * to close the RSS feed input stream.
+   * 
+   * @param feed RSS 2.0 feed input stream
+   * @param listener receives each RSS item, may be {@code null}
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  public RSSFeed parse(InputStream feed, RSSItemListener listener) {
+    return parse(feed, listener, /* options */null);
+  }
+
+  /**
+   * Parses input stream as RSS feed, passes each RSS item to the listener and
+   * stops as soon as one of the limits in the options is reached. It is the
+   * responsibility of the caller to close the RSS feed input stream.
+   * 
+   * @param feed RSS 2.0 feed input stream
+   * @param listener receives each RSS item, may be {@code null}
+   * @param options limits for the parser, {@code null} for none
+   * @return in-memory representation of RSS feed up to the limit
+   * @throws RSSFault if an unrecoverable parse error occurs
+   * @see RSSItemListener
+   */
+  public RSSFeed parse(InputStream feed, RSSItemListener listener, RSSParseOptions options) {
+    if (feed == null) {
+      throw new IllegalArgumentException("RSS feed must not be null.");
+    }
+
     try {
-      // Since SAXParserFactory implementations are not guaranteed to be
-      // thread-safe, a new local object is instantiated.
-      final SAXParserFactory factory = SAXParserFactory.newInstance();
+      SAXParser parser = parsers.poll();
+      if (parser == null) {
+        parser = newSAXParser();
+      }
 
-      // Support Android 1.6 (see Issue 1)
-      factory.setFeature("http://xml.org/sax/features/namespaces", false);
-      factory.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+      final RSSFeed result = parse(parser, feed, listener, options);
 
-      final SAXParser parser = factory.newSAXParser();
+      // only parsers which completed without errors are reused
+      recycle(parser);
 
-      return parse(parser, feed);
+      return result;
     } catch (ParserConfigurationException e) {
       throw new RSSFault(e);
     } catch (SAXException e) {
@@ -71,14 +159,43 @@ public class RSSParser implements RSSParserSPI {
     }
   }
 
+  private synchronized SAXParser newSAXParser() throws ParserConfigurationException, SAXException {
+    if (factory == null) {
+      final SAXParserFactory factory = SAXParserFactory.newInstance();
+
+      // Support Android 1.6 (see Issue 1)
+      factory.setFeature("http://xml.org/sax/features/namespaces", false);
+      factory.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+
+      this.factory = factory;
+    }
+
+    return factory.newSAXParser();
+  }
+
+  /**
+   * Returns the SAX parser to the pool unless it cannot be reset or the pool is
+   * full.
+   */
+  private void recycle(SAXParser parser) throws SAXException {
+    parser.getXMLReader().setContentHandler(IDLE_HANDLER);
+    try {
+      parser.reset();
+    } catch (UnsupportedOperationException e) {
+      return;
+    }
+
+    parsers.offer(parser);
+  }
+
   /**
    * Parses input stream as an RSS 2.0 feed.
    * 
    * @return in-memory representation of an RSS feed
-   * @throws IllegalArgumentException if either argument is {@code null}
+   * @throws IllegalArgumentException if the parser or the feed is {@code null}
    */
-  private RSSFeed parse(SAXParser parser, InputStream feed)
-      throws SAXException, IOException {
+  private RSSFeed parse(SAXParser parser, InputStream feed, RSSItemListener listener,
+      RSSParseOptions options) throws SAXException, IOException {
     if (parser == null) {
       throw new IllegalArgumentException("RSS parser must not be null.");
     } else if (feed == null) {
@@ -89,12 +206,33 @@ public class RSSParser implements RSSParserSPI {
     // See also http://www.w3.org/TR/REC-xml/#sec-guessing
     final InputSource source = new InputSource(feed);
     final XMLReader xmlreader = parser.getXMLReader();
-    final RSSHandler handler = new RSSHandler(config);
+    final RSSHandler handler = new RSSHandler(config, listener, options, itemCapacity());
 
     xmlreader.setContentHandler(handler);
-    xmlreader.parse(source);
+    try {
+      xmlreader.parse(source);
+    } catch (RSSHandler.StopParsingException e) {
+      // a limit has been reached, the feed is complete up to that point
+    }
+
+    final RSSFeed result = handler.feed();
+    result.trimItems();
+    if (!result.isTruncated()) {
+      lastItemCount = result.getItems().size();
+    }
+    return result;
+  }
+
+  /**
+   * Returns the initial capacity of the item list of the next feed.
+   */
+  private int itemCapacity() {
+    if (config.itemCapacity > 0) {
+      return config.itemCapacity;
+    }
 
-    return handler.feed();
+    final int count = lastItemCount;
+    return count > 0 ? Math.min(count, MAX_ITEM_CAPACITY) : RSSFeed.ITEM_CAPACITY;
   }
 
 }
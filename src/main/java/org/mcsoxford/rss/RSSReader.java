@@ -16,9 +16,10 @@
 
 package org.mcsoxford.rss;
 
-import android.net.Uri;
 import android.util.Log;
 
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
@@ -26,17 +27,32 @@ import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.ref.WeakReference;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * HTTP client to retrieve and parse RSS 2.0 feeds. Callers must call
@@ -57,6 +73,31 @@ public class RSSReader implements java.io.Closeable {
         mWeakCallback = new WeakReference<RSSReaderCallbacks>(callbacks);
     }
 
+    /**
+     * Optional in-memory cache of parsed feeds, {@code null} if disabled.
+     */
+    private RSSFeedCache feedCache;
+
+    /**
+     * Keep parsed feeds in memory so that cached loads and unchanged online
+     * feeds need not be parsed again. Cached feeds are shared by all loads,
+     * so a feed which the server reports as not modified keeps the expiry
+     * time of the response it was parsed from.
+     *
+     * @param feedCache cache of parsed feeds, {@code null} to disable
+     */
+    public void setFeedCache(RSSFeedCache feedCache) {
+        this.feedCache = feedCache;
+    }
+
+    /**
+     * Returns the registered callbacks or {@code null} if none have been set or
+     * they have been garbage collected.
+     */
+    private RSSReaderCallbacks getCallbacks() {
+        return mWeakCallback == null ? null : mWeakCallback.get();
+    }
+
     /**
      * Thread-safe {@link HttpClient} implementation.
      */
@@ -67,6 +108,26 @@ public class RSSReader implements java.io.Closeable {
      */
     private final RSSParserSPI parser;
 
+    /**
+     * Connection and retry settings.
+     */
+    private final RSSConfig config;
+
+    /**
+     * Source of the retry jitter.
+     */
+    private final Random random = new Random();
+
+    /**
+     * Time of the last eviction of idle connections.
+     */
+    private volatile long lastEvictionMillis;
+
+    /**
+     * Commits cache files in the background.
+     */
+    private final CacheWriter cacheWriter = new CacheWriter();
+
     /**
      * ConnectivityManager to check for network status
      */
@@ -79,8 +140,7 @@ public class RSSReader implements java.io.Closeable {
      * @param parser thread-safe RSS parser SPI implementation
      */
     public RSSReader(HttpClient httpclient, RSSParserSPI parser) {
-      this.httpclient = httpclient;
-      this.parser = parser;
+      this(httpclient, parser, new RSSConfig());
     }
 
     /**
@@ -92,16 +152,16 @@ public class RSSReader implements java.io.Closeable {
      * @param config RSS configuration
      */
     public RSSReader(HttpClient httpclient, RSSConfig config) {
-      this(httpclient, new RSSParser(config));
+      this(httpclient, new RSSParser(config), config);
     }
 
     /**
      * Instantiate a thread-safe HTTP client to retrieve and parse RSS feeds.
-     * Internal memory consumption and load performance can be tweaked with
-     * {@link RSSConfig}.
+     * Connections are pooled and kept alive as configured by {@link RSSConfig},
+     * which also tweaks internal memory consumption and load performance.
      */
     public RSSReader(RSSConfig config) {
-      this(new DefaultHttpClient(), new RSSParser(config));
+      this(newThreadSafeHttpClient(config), config);
     }
 
     /**
@@ -109,12 +169,102 @@ public class RSSReader implements java.io.Closeable {
      * Default RSS configuration capacity values are used.
      */
     public RSSReader() {
-      this(new DefaultHttpClient(), new RSSParser(new RSSConfig()));
+      this(new RSSConfig());
+    }
+
+    private RSSReader(HttpClient httpclient, RSSParserSPI parser, RSSConfig config) {
+      this.httpclient = httpclient;
+      this.parser = parser;
+      this.config = config;
+    }
+
+    /**
+     * Instantiate an HTTP client which can be shared by concurrent loads. The
+     * connection manager pools connections within the limits of the
+     * configuration, and keeps them alive at most for its keep-alive time.
+     *
+     * @param config limits of the connection pool
+     */
+    static HttpClient newThreadSafeHttpClient(RSSConfig config) {
+        final HttpParams params = new BasicHttpParams();
+        ConnManagerParams.setMaxTotalConnections(params, config.maxConnections);
+        ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(config.maxConnectionsPerRoute));
+
+        final SchemeRegistry registry = new SchemeRegistry();
+        registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+        registry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+
+        final DefaultHttpClient httpclient = new DefaultHttpClient(new ThreadSafeClientConnManager(params, registry), params);
+        httpclient.setKeepAliveStrategy(new KeepAliveStrategy(config.keepAliveMillis));
+        return httpclient;
+    }
+
+    /**
+     * Honours the Keep-Alive response header up to an upper bound. Without
+     * the bound, a connection would be kept forever unless the server sent a
+     * timeout.
+     */
+    static final class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+        private final ConnectionKeepAliveStrategy header = new DefaultConnectionKeepAliveStrategy();
+        private final long maxMillis;
+
+        KeepAliveStrategy(long maxMillis) {
+            this.maxMillis = maxMillis;
+        }
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            final long millis = header.getKeepAliveDuration(response, context);
+            return millis < 0 || millis > maxMillis ? maxMillis : millis;
+        }
+
     }
 
+    /**
+     * Size of the buffer used to write cache files.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
     public static final int CONFIG_ONLINE_ONLY = 0;
     public static final int CONFIG_CACHED_ONLY = 1;
 
+    /**
+     * Cache format flag to keep the raw XML of a feed in its cache file.
+     */
+    public static final int CACHE_XML = 1;
+
+    /**
+     * Cache format flag to keep a compact binary snapshot of the parsed feed
+     * next to its cache file. Snapshots load without an XML parser.
+     */
+    public static final int CACHE_SNAPSHOT = 2;
+
+    /**
+     * Cache format flag to gzip the XML in the cache file. A feed which the
+     * server sent gzip compressed is cached as received, without compressing
+     * it again. Only takes effect together with {@link #CACHE_XML}.
+     */
+    public static final int CACHE_COMPRESSED = 4;
+
+    /**
+     * Bitwise OR of the {@code CACHE_*} format flags.
+     */
+    private int cacheFormat = CACHE_XML;
+
+    /**
+     * Choose the representations which are written to the cache. A cached
+     * feed is loaded from its snapshot if there is one, and from its XML
+     * otherwise.
+     *
+     * @param cacheFormat bitwise OR of {@link #CACHE_XML},
+     *          {@link #CACHE_SNAPSHOT} and {@link #CACHE_COMPRESSED}, by
+     *          default only {@link #CACHE_XML}
+     */
+    public void setCacheFormat(int cacheFormat) {
+        this.cacheFormat = cacheFormat;
+    }
+
     /**
      * Send HTTP GET request and parse the XML response to construct an in-memory
      * representation of an RSS 2.0 feed.
@@ -127,12 +277,35 @@ public class RSSReader implements java.io.Closeable {
      * @throws RSSFault if an unrecoverable IO error has occurred
      */
     public RSSFeed load(String uri, int loadConfig) throws RSSReaderException {
+        return load(uri, loadConfig, null);
+    }
+
+    /**
+     * Load an RSS 2.0 feed, but stop parsing as soon as one of the limits in
+     * the options is reached. An online feed is then not downloaded any
+     * further, and neither cached on disk nor in memory. Loads with options
+     * bypass the in-memory feed cache.
+     * <p>
+     * Online loads are bounded by the timeouts of the {@link RSSConfig}, and
+     * transient failures are retried as configured there.
+     *
+     * @param uri RSS 2.0 feed URI
+     * @param loadConfig CONFIG_ONLINE_ONLY or CONFIG_CACHED_ONLY
+     * @param options limits for the parser, {@code null} for none
+     * @return in-memory representation of the RSS items up to the limit
+     * @throws RSSReaderException if RSS feed could not be retrieved because of
+     *           HTTP error
+     * @throws RSSFault if an unrecoverable IO error has occurred
+     * @see RSSParseOptions
+     */
+    public RSSFeed load(String uri, int loadConfig, RSSParseOptions options) throws RSSReaderException {
 
         RSSFeed feed = null;
 
         boolean isConnected = true;
-        if(mWeakCallback.get() != null) {
-            isConnected = mWeakCallback.get().onRequestNetworkState();
+        final RSSReaderCallbacks callbacks = getCallbacks();
+        if(callbacks != null) {
+            isConnected = callbacks.onRequestNetworkState();
         }
 
         // Load based on loadConfig
@@ -143,7 +316,7 @@ public class RSSReader implements java.io.Closeable {
                 // Attempt to load from online only
 
                 if(isConnected) {
-                    feed = loadOnline(uri);
+                    feed = loadOnline(uri, options);
                 }
 
                 break;
@@ -151,68 +324,184 @@ public class RSSReader implements java.io.Closeable {
             case CONFIG_CACHED_ONLY:
 
                 // Attempt to load from cached only
-                feed = loadCached(uri);
+                feed = loadCached(uri, options);
 
                 break;
 
         }
 
-        // Set feed link
-        if(feed != null) {
-            if (feed.getLink() == null) {
-                feed.setLink(Uri.parse(uri));
+        return feed;
+    }
+
+    /**
+     * Set the feed link to the URI if the feed has none. Feeds are only
+     * written before they are published, e.g. to the in-memory cache.
+     */
+    private static void setDefaultLink(RSSFeed feed, String uri) {
+        if (feed.getLink() == null) {
+            feed.setLinkString(uri);
+        }
+    }
+
+    /**
+     * Load the feed online, and retry transient failures within the total
+     * timeout of the configuration
+     */
+    private RSSFeed loadOnline(String uri, RSSParseOptions options) throws RSSReaderException {
+        final long deadline = config.totalTimeoutMillis > 0
+                ? System.currentTimeMillis() + config.totalTimeoutMillis : Long.MAX_VALUE;
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return fetch(uri, options, deadline, true);
+            } catch (RSSReaderException e) {
+                if (!Retries.isRetryable(e.getStatus()) || !backOff(attempt, e.retryAfterMillis, deadline)) {
+                    throw e;
+                }
+            } catch (RSSFault e) {
+                if (!Retries.isRetryable(e) || !backOff(attempt, -1, deadline)) {
+                    throw e;
+                }
             }
         }
+    }
 
-        return feed;
+    /**
+     * Waits before a retry, unless the retries are used up, the delay exceeds
+     * the maximum or the deadline, or the thread is interrupted.
+     *
+     * @param attempt zero after the first failure
+     * @param retryAfterMillis delay which the server asked for, {@code -1} if
+     *          none
+     * @return {@code true} to retry
+     */
+    private boolean backOff(int attempt, long retryAfterMillis, long deadline) {
+        if (attempt >= config.maxRetries) {
+            return false;
+        }
+
+        final long delay = retryAfterMillis >= 0 ? retryAfterMillis
+                : Retries.backoffMillis(attempt, config.retryDelayMillis, config.maxRetryDelayMillis, random);
+        if (delay > config.maxRetryDelayMillis || System.currentTimeMillis() + delay >= deadline) {
+            return false;
+        }
+
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            // Restore the interrupted status
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
-    private RSSFeed loadOnline(String uri) throws RSSReaderException{
+    /**
+     * Send a single GET request and parse the response.
+     *
+     * @param conditional {@code true} to send the validators of the cached
+     *          feed, if any
+     */
+    private RSSFeed fetch(String uri, RSSParseOptions options, long deadline, boolean conditional)
+            throws RSSReaderException {
 
         // Connected to network, attempt to get feed from URI
 
         final HttpGet httpget = new HttpGet(uri);
+        httpget.addHeader("Accept-Encoding", Compression.ACCEPT_ENCODING);
+        final HttpParams params = httpget.getParams();
+        HttpConnectionParams.setConnectionTimeout(params, config.connectTimeoutMillis);
+        HttpConnectionParams.setSoTimeout(params, config.socketTimeoutMillis);
+        ConnManagerParams.setTimeout(params, config.connectTimeoutMillis);
         RSSFeed feed = null;
 
+        // Only ask for changes if the cached feed is still there
+        final File cacheFile = getCacheFile(uri);
+        final CacheValidators validators = cacheFile == null || !conditional ? null : CacheValidators.read(cacheFile);
+        if (validators != null) {
+            validators.addTo(httpget);
+        }
+
+        evictIdleConnections();
+
         InputStream feedStream = null;
+        boolean cacheLost = false;
         try {
             // Send GET request to URI
             Log.i("TAG", "sending get request");
             final HttpResponse response = httpclient.execute(httpget);
 
+            // Extract content stream from HTTP response
+            final HttpEntity entity = response.getEntity();
+            feedStream = entity == null ? null : entity.getContent();
+
             // Check if server response is valid
             Log.i("TAG", "checking if server response is valid");
             final StatusLine status = response.getStatusLine();
-            if (status.getStatusCode() != HttpStatus.SC_OK) {
-                throw new RSSReaderException(status.getStatusCode(),
-                        status.getReasonPhrase());
-            }
+            if (status.getStatusCode() == HttpStatus.SC_NOT_MODIFIED && validators != null) {
+                // Feeds in the in-memory cache are shared and must not be
+                // written, so they keep the expiry time of their response
+                final RSSFeedCache feedCache = getFeedCache(options);
+                feed = feedCache == null ? null : feedCache.revalidate(uri);
+                if (feed != null) {
+                    return feed;
+                }
 
-            // Extract content stream from HTTP response
-            HttpEntity entity = response.getEntity();
-            feedStream = entity.getContent();
+                try {
+                    feed = readCached(uri, cacheFile, options);
+                } catch (RSSFault e) {
+                    // the cached XML is corrupt
+                }
+                if (feed != null) {
+                    feed.setExpires(expiresOf(response));
+                    if (feedCache != null) {
+                        feedCache.put(uri, feed);
+                    }
+                    return feed;
+                }
 
-            if(feedStream != null) {
+                // The cache is gone, so request the full feed instead
+                CacheValidators.delete(cacheFile);
+                cacheLost = true;
+            } else if (status.getStatusCode() != HttpStatus.SC_OK) {
+                final RSSReaderException e = new RSSReaderException(status.getStatusCode(),
+                        status.getReasonPhrase());
+                e.retryAfterMillis = Retries.retryAfterMillis(response, System.currentTimeMillis());
+                throw e;
+            }
 
-                // Good input stream, proceed normally
+            if(!cacheLost && feedStream != null) {
+
+                // Good input stream, parse it while it is written to a temporary file
+                final InputStream stream = Retries.withDeadline(feedStream, deadline);
+                final int cacheFormat = this.cacheFormat;
+                final String encoding = Compression.encodingOf(entity);
+                File xml = null;
+                if (cacheFile == null || (cacheFormat & CACHE_XML) == 0) {
+                    feed = parse(stream, encoding, options);
+                } else {
+                    xml = CacheWriter.tempFile(cacheFile);
+                    feed = parseAndCache(stream, encoding, xml, options, (cacheFormat & CACHE_COMPRESSED) != 0);
+                }
+                setDefaultLink(feed, uri);
 
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                if (feed.isTruncated()) {
+                    // Closing the stream would download the rest of the feed
+                    httpget.abort();
+                    return feed;
+                }
 
-                // Fake code simulating the copy
-                // You can generally do better with nio if you need...
-                // And please, unlike me, do something about the Exceptions :D
-                byte[] buffer = new byte[1024];
-                int len;
-                while ((len = feedStream.read(buffer)) > -1 ) {
-                    baos.write(buffer, 0, len);
+                feed.setExpires(expiresOf(response));
+                if (cacheFile != null) {
+                    // Replace the cache files in the background
+                    final RSSFeed snapshot = (cacheFormat & CACHE_SNAPSHOT) == 0 ? null : feed;
+                    cacheWriter.submit(cacheFile, new CacheWriter.Entry(xml, snapshot, CacheValidators.of(response)));
                 }
-                baos.flush();
 
-                // Create a copy of input stream for writing to cache
-                InputStream is1 = new ByteArrayInputStream(baos.toByteArray());
-                InputStream is2 = new ByteArrayInputStream(baos.toByteArray());
-                feed = parser.parse(is1);
-                saveToCache(getCacheFile(uri), is2);
+                final RSSFeedCache feedCache = getFeedCache(options);
+                if (feedCache != null) {
+                    feedCache.put(uri, feed);
+                }
             }
         } catch (ClientProtocolException e) {
             throw new RSSFault(e);
@@ -222,81 +511,280 @@ public class RSSReader implements java.io.Closeable {
             Resources.closeQuietly(feedStream);
         }
 
+        if (cacheLost) {
+            return fetch(uri, options, deadline, false);
+        }
+
         return feed;
     }
 
 
+    /**
+     * Returns the time until which the response may be cached according to
+     * its Cache-Control or Expires header, {@code Long.MIN_VALUE} if unknown.
+     * An Expires date is taken relative to the Date header, so that a skewed
+     * server clock does not matter.
+     */
+    private static long expiresOf(HttpResponse response) {
+        final long now = System.currentTimeMillis();
+        final Header cacheControl = response.getFirstHeader("Cache-Control");
+        if (cacheControl != null) {
+            for (HeaderElement element : cacheControl.getElements()) {
+                final String name = element.getName();
+                if ("no-cache".equalsIgnoreCase(name) || "no-store".equalsIgnoreCase(name)) {
+                    return now;
+                } else if ("max-age".equalsIgnoreCase(name) && element.getValue() != null) {
+                    try {
+                        return now + Long.parseLong(element.getValue().trim()) * 1000;
+                    } catch (NumberFormatException e) {
+                        // fall back to the Expires header
+                    }
+                }
+            }
+        }
+
+        final Header expiresHeader = response.getFirstHeader("Expires");
+        final long expires = expiresHeader == null ? Dates.INVALID : Dates.parseRfc822Millis(expiresHeader.getValue());
+        if (expires == Dates.INVALID) {
+            // includes "0", which means already expired
+            return expiresHeader == null ? Dates.INVALID : now;
+        }
+
+        final Header dateHeader = response.getFirstHeader("Date");
+        final long date = dateHeader == null ? Dates.INVALID : Dates.parseRfc822Millis(dateHeader.getValue());
+        return date == Dates.INVALID ? expires : now + expires - date;
+    }
+
+    /**
+     * Closes pooled connections which the server may have dropped in the
+     * meantime. Runs at most twice per idle timeout, before a request rather
+     * than on a timer thread.
+     */
+    private void evictIdleConnections() {
+        final long idleTimeoutMillis = config.idleTimeoutMillis;
+        if (idleTimeoutMillis <= 0) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        if (now - lastEvictionMillis < idleTimeoutMillis / 2) {
+            return;
+        }
+        lastEvictionMillis = now;
+
+        final ClientConnectionManager connectionManager = httpclient.getConnectionManager();
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Get a cached feed for a uri
      *
      * @param uri of RSS feed
+     * @param options limits for the parser, {@code null} for none
      * @return RSSFeed from cached version of feed from uri
      */
-    private RSSFeed loadCached(String uri) {
+    private RSSFeed loadCached(String uri, RSSParseOptions options) {
+
+        final RSSFeedCache feedCache = getFeedCache(options);
+        if (feedCache != null) {
+            final RSSFeed feed = feedCache.get(uri);
+            if (feed != null) {
+                return feed;
+            }
+        }
 
         File cacheFile = getCacheFile(uri);
 
         if(cacheFile == null)
             return null;
 
-        RSSFeed feed = null;
+        final RSSFeed feed = readCached(uri, cacheFile, options);
+        if (feed != null && feedCache != null) {
+            feedCache.put(uri, feed);
+        }
 
-        try {
+        return feed;
+    }
 
-            InputStream is = new FileInputStream(cacheFile);
+    /**
+     * Load the snapshot or parse the cache file. The feed is not put in the
+     * in-memory cache, so that the caller may still complete it.
+     *
+     * @param uri of RSS feed
+     * @param cacheFile File which contains the cached feed
+     * @param options limits for the parser, {@code null} for none
+     * @return RSSFeed from cache file, {@code null} if there is no such file
+     */
+    private RSSFeed readCached(String uri, File cacheFile, RSSParseOptions options) {
+
+        // A pending write would replace the files while they are read
+        cacheWriter.await(cacheFile);
+
+        RSSFeed feed = loadSnapshot(cacheFile, options);
 
-            if(is != null)
-                feed = parser.parse(is);
+        if (feed == null && cacheFile.exists()) {
+            try {
+                // Large cache files are memory-mapped, and no stream is left open
+                final InputStream stream = Compression.decodeCache(ByteBufferInputStream.read(cacheFile));
+                try {
+                    feed = parseXml(stream, options);
+                } finally {
+                    Compression.release(stream);
+                }
+            } catch (IOException e) {
+                return null;
+            }
+        }
 
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+        if (feed != null) {
+            setDefaultLink(feed, uri);
         }
 
         return feed;
     }
 
+    /**
+     * Load the snapshot of a cache file. Snapshots which cannot be read, e.g.
+     * because they were written by another version, are deleted.
+     *
+     * @return RSSFeed from the snapshot, {@code null} if there is none
+     */
+    private RSSFeed loadSnapshot(File cacheFile, RSSParseOptions options) {
+        final File snapshot = Snapshots.file(cacheFile);
+        if (!snapshot.exists()) {
+            return null;
+        }
+
+        try {
+            return Snapshots.read(ByteBufferInputStream.read(snapshot), config, options);
+        } catch (IOException e) {
+            // fall back to the XML
+        }
+
+        snapshot.delete();
+        return null;
+    }
+
+    /**
+     * Returns the in-memory feed cache, or {@code null} if it is disabled or
+     * the load has parse options. Such loads may yield partial feeds, which
+     * must be neither served from nor stored in the cache.
+     */
+    private RSSFeedCache getFeedCache(RSSParseOptions options) {
+        return options == null ? feedCache : null;
+    }
+
     private File getCacheFile(String uri) {
 
-        if (mWeakCallback.get() == null) {
+        final RSSReaderCallbacks callbacks = getCallbacks();
+        if (callbacks == null) {
             return null;
         } else {
-            return mWeakCallback.get().onRequestCacheFile(uri);
+            return callbacks.onRequestCacheFile(uri);
         }
     }
 
 
 
     /**
-     * Writes an InputStream to a cache File for offline use.
+     * Parses a feed stream which is decompressed on the fly.
+     *
+     * @param feedStream InputStream of the RSS feed, which is not closed
+     * @param encoding normalized Content-Encoding, {@code null} for none
+     * @param options limits for the parser, {@code null} for none
+     * @return in-memory representation of the RSS feed
+     * @throws IOException if the encoding is not supported
+     */
+    private RSSFeed parse(InputStream feedStream, String encoding, RSSParseOptions options)
+            throws IOException {
+        final InputStream decoded = Compression.decode(feedStream, encoding);
+        try {
+            return parseXml(decoded, options);
+        } finally {
+            Compression.release(decoded);
+        }
+    }
+
+    /**
+     * Parses an XML stream with the parser SPI. Only {@link RSSParser} knows
+     * about parse options, so other implementations always parse the whole
+     * document.
+     *
+     * @param xmlStream InputStream of the RSS feed, which is not closed
+     * @param options limits for the parser, {@code null} for none
+     * @return in-memory representation of the RSS feed
+     */
+    private RSSFeed parseXml(InputStream xmlStream, RSSParseOptions options) {
+        if (parser instanceof RSSParser) {
+            return ((RSSParser) parser).parse(xmlStream, options);
+        }
+        return parser.parse(xmlStream);
+    }
+
+    /**
+     * Parses a feed stream and at the same time writes its bytes to a temporary
+     * File, which becomes the cache file once it is committed. The temporary
+     * file is deleted if the feed cannot be parsed or written completely, or if
+     * the parser stopped early, so that the previous cache file remains intact.
      *
-     * @param cacheFile File to write feedStream to
-     * @param feedStream InputStream to write to cache file
+     * @param feedStream InputStream of the RSS feed, which is not closed
+     * @param encoding normalized Content-Encoding, {@code null} for none
+     * @param tempFile File to write feedStream to
+     * @param options limits for the parser, {@code null} for none
+     * @param compress {@code true} to write the XML gzip compressed
+     * @return in-memory representation of the RSS feed
      * @throws IOException if file write fails
      */
-    private void saveToCache(File cacheFile, InputStream feedStream) throws IOException {
-    	  if(cacheFile == null || feedStream == null)
-              return;
+    private RSSFeed parseAndCache(InputStream feedStream, String encoding, File tempFile,
+            RSSParseOptions options, boolean compress) throws IOException {
+        final OutputStream fileStream = new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE);
+        OutputStream cacheStream = fileStream;
+        InputStream decoded = null;
+        boolean cached = false;
+        try {
+            final TeeInputStream tee;
+            final InputStream xmlStream;
+            if (compress && Compression.GZIP.equals(encoding)) {
+                // keep the bytes as received
+                tee = new TeeInputStream(feedStream, cacheStream);
+                xmlStream = decoded = Compression.decode(tee, encoding);
+            } else {
+                if (compress) {
+                    cacheStream = new GZIPOutputStream(fileStream, BUFFER_SIZE);
+                }
+                decoded = Compression.decode(feedStream, encoding);
+                xmlStream = tee = new TeeInputStream(decoded, cacheStream);
+            }
 
-        // FileOutputStream used to write file
-        FileOutputStream fileOutput = new FileOutputStream(cacheFile);
+            final RSSFeed feed = parseXml(xmlStream, options);
+            if (feed.isTruncated()) {
+                // a partial document is useless offline
+                return feed;
+            }
 
-        //Buffer to read data from InputStream
-        byte[] buffer = new byte[1024];
-        int bufferLength = 0;
-        while ( (bufferLength = feedStream.read(buffer)) > 0 ) {
-            fileOutput.write(buffer, 0, bufferLength);
-        }
+            // the parser need not read past the end of the root element
+            tee.drain();
+            cacheStream.close();
+            cached = true;
 
-        //close the output stream when done
-        fileOutput.close();
+            return feed;
+        } finally {
+            Compression.release(decoded);
+            if (!cached) {
+                Resources.closeQuietly(cacheStream);
+                tempFile.delete();
+            }
+        }
     }
 
     /**
-     * Release all HTTP client resources.
+     * Release all HTTP client resources. Cache files which are still being
+     * written are committed first.
      */
     public void close() {
+        cacheWriter.close();
         httpclient.getConnectionManager().shutdown();
     }
 
 }
-
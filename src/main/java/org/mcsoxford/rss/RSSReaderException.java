@@ -30,6 +30,11 @@ public class RSSReaderException extends RSSException {
 
   private final int status;
 
+  /**
+   * Delay which the server asked for before a retry, {@code -1} if none.
+   */
+  transient long retryAfterMillis = -1;
+
   public RSSReaderException(int status, String message) {
     super(message);
     this.status = status;
@@ -0,0 +1,508 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mcsoxford.rss;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls subscribed RSS feeds with an {@link RSSLoader}, each at its own
+ * interval. The interval of a feed adapts to how often it changes: a feed
+ * which changed is polled again after about half the average time between its
+ * changes, while a feed which did not change is polled less and less often.
+ * The interval never drops below the &lt;ttl&gt; of the feed or the HTTP
+ * expiry time of its last response, and it stays within the configured
+ * minimum and maximum.
+ * <p>
+ * The scheduler consumes all results of its loader, which must therefore not
+ * be used for anything else. Results are reported to a {@link Listener} on
+ * the scheduler's own thread.
+ * <p>
+ * <b>Usage Example</b>
+ * 
+ * <pre>
+ * {@code 
+ *  RSSScheduler scheduler = new RSSScheduler(RSSLoader.fifo(16, 4, 2), listener);
+ *  scheduler.subscribe("http://example.com/rss.xml");
+ *  ...
+ *  scheduler.stop();
+ * }
+ * </pre>
+ * 
+ * @author Mr Horn
+ */
+public class RSSScheduler {
+
+  /**
+   * Receives the outcome of each poll.
+   */
+  public interface Listener {
+
+    /**
+     * Called after a feed has been loaded.
+     * 
+     * @param uri subscribed RSS feed URI
+     * @param feed loaded RSS feed
+     * @param changed {@code false} if the items are the same as on the
+     *          previous poll
+     */
+    void onLoaded(String uri, RSSFeed feed, boolean changed);
+
+    /**
+     * Called after a feed could not be loaded. The feed is polled again later.
+     * 
+     * @param uri subscribed RSS feed URI
+     * @param cause error which caused the failure
+     */
+    void onFailed(String uri, Throwable cause);
+
+  }
+
+  /**
+   * Human-readable names of the threads which poll RSS feeds
+   */
+  private final static String POLL_THREAD_NAME = "RSS feed scheduler";
+  private final static String RESULT_THREAD_NAME = "RSS feed scheduler results";
+
+  private static final long MINUTE_MILLIS = 60 * 1000;
+
+  /**
+   * Default lower and upper bounds of the poll interval
+   */
+  private static final long DEFAULT_MIN_INTERVAL_MILLIS = 5 * MINUTE_MILLIS;
+  private static final long DEFAULT_MAX_INTERVAL_MILLIS = 24 * 60 * MINUTE_MILLIS;
+
+  /**
+   * Poll intervals are lengthened by a random fraction of up to this much, so
+   * that feeds subscribed at the same time do not stay in lockstep.
+   */
+  private static final double JITTER = 0.1;
+
+  /**
+   * Delay before a poll is handed to the loader again if its queue was full.
+   */
+  private static final long BUSY_DELAY_MILLIS = 1000;
+
+  private final RSSLoader loader;
+  private final Listener listener;
+  private final long minIntervalMillis;
+  private final long maxIntervalMillis;
+  private final Random random = new Random();
+
+  /**
+   * Subscriptions by URI. A subscription is on the delay queue while it waits
+   * for its next poll, and off the queue while it is being loaded.
+   */
+  private final ConcurrentHashMap<String, Subscription> subscriptions = new ConcurrentHashMap<String, Subscription>();
+  private final DelayQueue<Subscription> queue = new DelayQueue<Subscription>();
+
+  /**
+   * Subscription for which each pending load was issued, guarded by itself. A
+   * URI may have been unsubscribed and subscribed again in the meantime.
+   */
+  private final Map<Future<RSSFeed>, Subscription> polls = new HashMap<Future<RSSFeed>, Subscription>();
+
+  private final Thread pollThread;
+  private final Thread resultThread;
+  private volatile boolean stopped;
+
+  /**
+   * Create a scheduler which polls each feed at most every five minutes and
+   * at least once a day.
+   * 
+   * @param loader
+   *          loads the RSS feeds, exclusively for this scheduler
+   * @param listener
+   *          receives the outcome of each poll
+   */
+  public RSSScheduler(RSSLoader loader, Listener listener) {
+    this(loader, listener, DEFAULT_MIN_INTERVAL_MILLIS, DEFAULT_MAX_INTERVAL_MILLIS);
+  }
+
+  /**
+   * Create a scheduler which polls each feed within the specified bounds.
+   * 
+   * @param loader
+   *          loads the RSS feeds, exclusively for this scheduler
+   * @param listener
+   *          receives the outcome of each poll
+   * @param minIntervalMillis
+   *          shortest time between two polls of the same feed
+   * @param maxIntervalMillis
+   *          longest time between two polls of the same feed
+   * @throws IllegalArgumentException
+   *           if an argument is {@code null} or the interval bounds are not
+   *           positive and ordered
+   */
+  public RSSScheduler(RSSLoader loader, Listener listener, long minIntervalMillis, long maxIntervalMillis) {
+    if (loader == null || listener == null) {
+      throw new IllegalArgumentException("RSS loader and listener must not be null.");
+    } else if (minIntervalMillis < 1 || maxIntervalMillis < minIntervalMillis) {
+      throw new IllegalArgumentException("Poll interval bounds must be positive and ordered.");
+    }
+
+    this.loader = loader;
+    this.listener = listener;
+    this.minIntervalMillis = minIntervalMillis;
+    this.maxIntervalMillis = maxIntervalMillis;
+
+    pollThread = new Thread(new Poller(), POLL_THREAD_NAME);
+    resultThread = new Thread(new Collector(), RESULT_THREAD_NAME);
+    pollThread.start();
+    resultThread.start();
+  }
+
+  /**
+   * Poll the specified RSS feed URI, starting immediately.
+   * 
+   * @return {@code false} if the URI is already subscribed or the scheduler
+   *         has been stopped
+   */
+  public boolean subscribe(String uri) {
+    if (uri == null) {
+      throw new IllegalArgumentException("RSS feed URI must not be null.");
+    } else if (stopped) {
+      return false;
+    }
+
+    final Subscription subscription = new Subscription(uri, System.currentTimeMillis());
+    if (subscriptions.putIfAbsent(uri, subscription) != null) {
+      return false;
+    }
+
+    queue.add(subscription);
+    return true;
+  }
+
+  /**
+   * Stop polling the specified RSS feed URI. The result of a poll which is in
+   * progress is not reported.
+   * 
+   * @return {@code false} if the URI is not subscribed
+   */
+  public boolean unsubscribe(String uri) {
+    final Subscription subscription = subscriptions.remove(uri);
+    if (subscription == null) {
+      return false;
+    }
+
+    queue.remove(subscription);
+    return true;
+  }
+
+  /**
+   * Returns the time of the next poll of the subscribed RSS feed URI in
+   * milliseconds since the epoch, or {@code Long.MIN_VALUE} if the URI is not
+   * subscribed.
+   */
+  public long getNextPollTime(String uri) {
+    final Subscription subscription = subscriptions.get(uri);
+    return subscription == null ? Long.MIN_VALUE : subscription.nextPollMillis;
+  }
+
+  /**
+   * Stop polling and stop the loader. Polls in progress are not reported. The
+   * scheduler also stops by itself once its loader has been stopped.
+   */
+  public void stop() {
+    stopped = true;
+    pollThread.interrupt();
+    resultThread.interrupt();
+    loader.stop();
+  }
+
+  /**
+   * Puts the subscription back on the queue unless it has been unsubscribed.
+   */
+  private void reschedule(Subscription subscription, long now, long intervalMillis) {
+    final long jitter = (long) (random.nextDouble() * JITTER * intervalMillis);
+    subscription.nextPollMillis = now + intervalMillis + jitter;
+    if (!stopped && subscriptions.get(subscription.uri) == subscription) {
+      queue.add(subscription);
+    }
+  }
+
+  /**
+   * Internal consumer of due subscriptions, which hands them to the loader.
+   */
+  class Poller implements Runnable {
+
+    @Override
+    public void run() {
+      try {
+        while (!stopped) {
+          final Subscription subscription = queue.take();
+          if (subscriptions.get(subscription.uri) != subscription) {
+            continue;
+          }
+
+          // the result must not be taken before the load has been recorded
+          final Future<RSSFeed> future;
+          synchronized (polls) {
+            future = loader.load(subscription.uri, RSSReader.CONFIG_ONLINE_ONLY);
+            if (future != null) {
+              polls.put(future, subscription);
+            }
+          }
+
+          if (future == null && loader.isStopped()) {
+            // a stopped loader refuses every load, so polling is over
+            Log.w(POLL_THREAD_NAME, "RSS loader stopped, stopping scheduler");
+            stop();
+          } else if (future == null) {
+            // the loader is full, which is no fault of the feed, so try again
+            // soon without backing off
+            reschedule(subscription, System.currentTimeMillis(), BUSY_DELAY_MILLIS);
+          }
+        }
+      } catch (InterruptedException e) {
+        // Restore the interrupted status
+        Thread.currentThread().interrupt();
+      }
+    }
+
+  }
+
+  /**
+   * Internal consumer of the loader's results, which reschedules the feeds
+   * and reports the results.
+   */
+  class Collector implements Runnable {
+
+    @Override
+    public void run() {
+      try {
+        while (!stopped) {
+          final Future<RSSFeed> future = loader.take();
+          final Subscription subscription;
+          synchronized (polls) {
+            subscription = polls.remove(future);
+          }
+          if (subscription == null || subscriptions.get(subscription.uri) != subscription) {
+            // unsubscribed while loading
+            continue;
+          }
+
+          final String uri = subscription.uri;
+          final long now = System.currentTimeMillis();
+          RSSFeed feed = null;
+          Throwable cause = null;
+          try {
+            feed = future.get();
+          } catch (ExecutionException e) {
+            cause = e.getCause();
+          }
+
+          try {
+            if (feed == null) {
+              reschedule(subscription, now, subscription.failed(minIntervalMillis, maxIntervalMillis));
+              listener.onFailed(uri, cause == null ? new RSSFault("RSS feed could not be loaded") : cause);
+            } else {
+              final boolean changed = subscription.loaded(feed, now, minIntervalMillis, maxIntervalMillis);
+              reschedule(subscription, now, subscription.intervalMillis);
+              listener.onLoaded(uri, feed, changed);
+            }
+          } catch (RuntimeException e) {
+            // a faulty listener must not stop the polling of all feeds
+            Log.w(RESULT_THREAD_NAME, "RSS scheduler listener failed", e);
+          }
+        }
+      } catch (InterruptedException e) {
+        // Restore the interrupted status
+        Thread.currentThread().interrupt();
+      }
+    }
+
+  }
+
+  /**
+   * Internal poll state of a subscribed RSS feed. Except for the time of the
+   * next poll, the state is accessed by one thread at a time, as the
+   * subscription is handed over through the delay queue and the loader.
+   */
+  static final class Subscription implements Delayed {
+
+    /**
+     * Interval after the first poll, unless the feed asks for more.
+     */
+    static final long INITIAL_INTERVAL_MILLIS = 60 * MINUTE_MILLIS;
+
+    /**
+     * Weight of the latest observed time between two changes in the moving
+     * average.
+     */
+    private static final double ALPHA = 0.3;
+
+    /**
+     * Growth of the interval after each poll which found no change.
+     */
+    private static final double BACKOFF = 1.5;
+
+    /**
+     * Limits the exponential backoff of failures.
+     */
+    private static final int MAX_FAILURE_SHIFT = 16;
+
+    final String uri;
+    volatile long nextPollMillis;
+
+    /** Interval before the next poll after a successful one */
+    long intervalMillis = INITIAL_INTERVAL_MILLIS;
+
+    /** Exponentially weighted moving average, zero if unknown */
+    long changeIntervalMillis;
+
+    private boolean loaded;
+    private long fingerprint;
+    private long lastChangeMillis = Dates.INVALID;
+    private int failures;
+
+    Subscription(String uri, long nextPollMillis) {
+      this.uri = uri;
+      this.nextPollMillis = nextPollMillis;
+    }
+
+    /**
+     * Updates the change history and the poll interval with a loaded feed.
+     * 
+     * @return {@code true} if the feed changed since the last poll
+     */
+    boolean loaded(RSSFeed feed, long now, long minMillis, long maxMillis) {
+      final long print = fingerprint(feed);
+      final boolean changed = !loaded || print != fingerprint;
+
+      long interval;
+      if (!loaded) {
+        interval = INITIAL_INTERVAL_MILLIS;
+      } else if (changed) {
+        final long changeMillis = changeTime(feed, now);
+        if (lastChangeMillis != Dates.INVALID && changeMillis > lastChangeMillis) {
+          final long observed = changeMillis - lastChangeMillis;
+          changeIntervalMillis = changeIntervalMillis == 0 ? observed
+              : (long) (ALPHA * observed + (1 - ALPHA) * changeIntervalMillis);
+        }
+
+        // sample twice per expected change
+        interval = changeIntervalMillis > 0 ? changeIntervalMillis / 2 : intervalMillis;
+      } else {
+        interval = (long) (intervalMillis * BACKOFF);
+      }
+
+      if (changed) {
+        lastChangeMillis = changeTime(feed, now);
+      }
+      loaded = true;
+      fingerprint = print;
+      failures = 0;
+
+      intervalMillis = Math.min(Math.max(interval, lowerBound(feed, now, minMillis, maxMillis)), maxMillis);
+      return changed;
+    }
+
+    /**
+     * Returns the delay before polling again after a failure, which doubles
+     * with every consecutive failure. The interval after the next successful
+     * poll is not affected.
+     */
+    long failed(long minMillis, long maxMillis) {
+      final int shift = Math.min(failures++, MAX_FAILURE_SHIFT);
+      return minMillis > maxMillis >> shift ? maxMillis : minMillis << shift;
+    }
+
+    /**
+     * Neither the &lt;ttl&gt; nor the HTTP expiry time are undercut.
+     */
+    private static long lowerBound(RSSFeed feed, long now, long minMillis, long maxMillis) {
+      long bound = minMillis;
+
+      final Integer ttl = feed.getTTL();
+      if (ttl != null) {
+        bound = Math.max(bound, ttl.longValue() * MINUTE_MILLIS);
+      }
+
+      final long expires = feed.getExpires();
+      if (expires != Dates.INVALID) {
+        bound = Math.max(bound, expires - now);
+      }
+
+      return bound;
+    }
+
+    /**
+     * Returns the time of the latest change: the newest item date, or else
+     * the last build date, or else the time of the poll.
+     */
+    private static long changeTime(RSSFeed feed, long now) {
+      long time = Dates.INVALID;
+      final List<RSSItem> items = feed.getItems();
+      for (int i = 0, size = items.size(); i < size; i++) {
+        time = Math.max(time, items.get(i).getPubDateTime());
+      }
+
+      if (time == Dates.INVALID) {
+        time = feed.getLastBuildDateTime();
+      }
+
+      return time == Dates.INVALID || time > now ? now : time;
+    }
+
+    /**
+     * Hash of the items of the feed. Some servers update the last build date
+     * on every request, so it is not part of the hash.
+     */
+    static long fingerprint(RSSFeed feed) {
+      final List<RSSItem> items = feed.getItems();
+      long hash = items.size();
+      for (int i = 0, size = items.size(); i < size; i++) {
+        final RSSItem item = items.get(i);
+        hash = 31 * hash + hashCode(item.getLinkString());
+        hash = 31 * hash + hashCode(item.getTitle());
+        hash = 31 * hash + item.getPubDateTime();
+      }
+      return hash;
+    }
+
+    private static int hashCode(String value) {
+      return value == null ? 0 : value.hashCode();
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(nextPollMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      final long a = nextPollMillis;
+      final long b = ((Subscription) other).nextPollMillis;
+      return a < b ? -1 : a > b ? 1 : 0;
+    }
+
+  }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Bounded pool of strings which lets equal category names share a single
+ * String instance across all feeds parsed with the same {@link RSSConfig}.
+ * Applications which keep many feeds in memory can thereby shrink their heap
+ * considerably, since the same few category names tend to repeat in every
+ * item.
+ * <p>
+ * The pool is a fixed-size cache of strings, so it never grows beyond its
+ * capacity. A string which collides with pooled strings may replace one of
+ * them, after which new occurrences of the replaced string are no longer
+ * shared. This class is thread-safe without locking: concurrent updates at
+ * worst miss a chance to share an instance, because strings are immutable.
+ * 
+ * @author Mr Horn
+ */
+public final class RSSStringPool {
+
+  /**
+   * Number of adjacent slots which are searched for a string.
+   */
+  private static final int PROBES = 4;
+
+  /**
+   * Pooled strings, {@code null} for empty slots. Reads and writes of
+   * references are atomic, and strings are safely published by their final
+   * fields.
+   */
+  private final String[] strings;
+
+  /**
+   * Instantiate a pool for at most the specified number of strings.
+   * 
+   * @param capacity maximum number of pooled strings, which is rounded up to a
+   *          power of two
+   */
+  public RSSStringPool(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+
+    strings = new String[Math.max(PROBES, Integer.highestOneBit(capacity - 1) << 1)];
+  }
+
+  /**
+   * Returns a pooled String which is equal to the specified characters. The
+   * lookup does not allocate if an equal string is already pooled.
+   * 
+   * @param chars characters, e.g. of a category name
+   * @return string with the same characters, never {@code null}
+   */
+  public String intern(CharSequence chars) {
+    final int hash = StringTable.hashCode(chars);
+    final int mask = strings.length - 1;
+    final int first = spread(hash) & mask;
+
+    int empty = -1;
+    for (int i = 0; i < PROBES; i++) {
+      final int slot = (first + i) & mask;
+      final String string = strings[slot];
+      if (string == null) {
+        if (empty < 0) {
+          empty = slot;
+        }
+      } else if (string.hashCode() == hash && string.contentEquals(chars)) {
+        return string;
+      }
+    }
+
+    final String value = chars.toString();
+    strings[empty < 0 ? first : empty] = value;
+    return value;
+  }
+
+  /**
+   * Mix the high bits of the String hash code into the slot index, since
+   * short names differ mostly in their last characters.
+   */
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mcsoxford.rss;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Random;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+
+/**
+ * Internal retry policy for transient load failures. Retries are delayed by
+ * an exponential backoff with full jitter, i.e. a uniformly random delay
+ * between zero and the exponentially growing cap. This spreads the retries of
+ * many clients after a common outage, so that they do not hit the server in
+ * waves.
+ *
+ * @author Mr Horn
+ */
+final class Retries {
+
+  /** HTTP status "Too Many Requests" */
+  private static final int SC_TOO_MANY_REQUESTS = 429;
+
+  private static final String RETRY_AFTER = "Retry-After";
+
+  /* Hide constructor */
+  private Retries() {}
+
+  /**
+   * Determines if a request which failed with the HTTP status may succeed
+   * later, i.e. if the server is overloaded or temporarily unavailable.
+   */
+  static boolean isRetryable(int status) {
+    return status == SC_TOO_MANY_REQUESTS || status >= 500 && status < 600;
+  }
+
+  /**
+   * Determines if a load which failed with the fault may succeed later. IO
+   * errors are transient, but neither protocol violations, malformed feeds
+   * nor an exceeded total timeout are.
+   */
+  static boolean isRetryable(RSSFault fault) {
+    final Throwable cause = fault.getCause();
+    return cause instanceof IOException && !(cause instanceof ClientProtocolException)
+        && !(cause instanceof DeadlineExceededException);
+  }
+
+  /**
+   * Returns a random delay before the specified retry.
+   *
+   * @param attempt zero for the first retry
+   * @param baseMillis cap of the delay of the first retry
+   * @param maxMillis cap of the delay of any retry
+   */
+  static long backoffMillis(int attempt, long baseMillis, long maxMillis, Random random) {
+    final long cap = attempt >= 30 || baseMillis > maxMillis >> attempt ? maxMillis : baseMillis << attempt;
+    return (long) (random.nextDouble() * cap);
+  }
+
+  /**
+   * Returns the delay which the Retry-After header of the response asks for,
+   * or {@code -1} if there is no valid header. The header is either a number
+   * of seconds or an HTTP date.
+   *
+   * @param now current time in milliseconds
+   */
+  static long retryAfterMillis(HttpResponse response, long now) {
+    final Header header = response.getFirstHeader(RETRY_AFTER);
+    if (header == null) {
+      return -1;
+    }
+
+    final String value = header.getValue().trim();
+    try {
+      final long seconds = Long.parseLong(value);
+      return seconds < 0 ? -1 : seconds * 1000;
+    } catch (NumberFormatException e) {
+      // not a number of seconds
+    }
+
+    final long date = Dates.parseRfc822Millis(value);
+    return date == Dates.INVALID ? -1 : Math.max(0, date - now);
+  }
+
+  /**
+   * Returns a stream which fails once the deadline has passed. A read which
+   * blocks is interrupted by the socket timeout rather than the deadline.
+   *
+   * @param deadline time in milliseconds, {@code Long.MAX_VALUE} for none
+   */
+  static InputStream withDeadline(InputStream in, long deadline) {
+    return deadline == Long.MAX_VALUE ? in : new DeadlineInputStream(in, deadline);
+  }
+
+  /**
+   * Signals that the total time for a load has been exceeded.
+   */
+  static final class DeadlineExceededException extends InterruptedIOException {
+
+    /**
+     * Unsupported serialization
+     */
+    private static final long serialVersionUID = 1L;
+
+    DeadlineExceededException() {
+      super("Total timeout for loading the RSS feed exceeded");
+    }
+
+  }
+
+  private static final class DeadlineInputStream extends FilterInputStream {
+
+    private final long deadline;
+
+    DeadlineInputStream(InputStream in, long deadline) {
+      super(in);
+      this.deadline = deadline;
+    }
+
+    private void check() throws DeadlineExceededException {
+      if (System.currentTimeMillis() > deadline) {
+        throw new DeadlineExceededException();
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      check();
+      return in.read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      check();
+      return in.read(buffer, offset, length);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      check();
+      return in.skip(n);
+    }
+
+  }
+
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Internal compact binary serialization of parsed RSS feeds. A snapshot can be
+ * loaded without an XML parser, which makes cached feeds much cheaper to load
+ * than their XML.
+ * <p>
+ * A snapshot starts with a four byte magic number and a version byte. Strings
+ * are length-prefixed UTF-8, where a length of zero denotes {@code null} and
+ * any other length is one more than the number of bytes. Counts and lengths
+ * are unsigned variable-length integers, other integers are zigzag encoded.
+ * Dates are eight byte big-endian milliseconds since the epoch with
+ * {@code Long.MIN_VALUE} for absent dates.
+ *
+ * @author Mr Horn
+ */
+final class Snapshots {
+
+  /**
+   * "RSS" followed by the ASCII unit separator.
+   */
+  private static final int MAGIC = 0x5253531F;
+
+  /**
+   * Incremented whenever the format changes. Snapshots of other versions are
+   * rejected, so that the feed is loaded from its XML instead.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * File name suffix of the snapshot which belongs to a cache file.
+   */
+  private static final String SUFFIX = ".snapshot";
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /* Hide constructor */
+  private Snapshots() {}
+
+  /**
+   * Returns the snapshot file which belongs to the cache file.
+   */
+  static File file(File cacheFile) {
+    return new File(cacheFile.getParentFile(), cacheFile.getName() + SUFFIX);
+  }
+
+  /**
+   * Serializes the feed. It is the responsibility of the caller to close the
+   * output stream.
+   *
+   * @throws IOException if the stream cannot be written
+   */
+  static void write(RSSFeed feed, OutputStream out) throws IOException {
+    final Writer writer = new Writer(out);
+    writer.writeInt(MAGIC);
+    writer.write(VERSION);
+
+    writeBase(writer, feed);
+    writer.writeLong(feed.getLastBuildDateTime());
+    final Integer ttl = feed.getTTL();
+    writer.writeBoolean(ttl != null);
+    if (ttl != null) {
+      writer.writeSignedVarint(ttl.intValue());
+    }
+
+    final List<RSSItem> items = feed.getItems();
+    writer.writeVarint(items.size());
+    for (int i = 0, size = items.size(); i < size; i++) {
+      writeItem(writer, items.get(i));
+    }
+
+    writer.flush();
+  }
+
+  private static void writeBase(Writer writer, RSSBase base) throws IOException {
+    writer.writeString(base.getTitle());
+    writer.writeString(base.getLinkString());
+    writer.writeString(base.getDescription());
+    writer.writeLong(base.getPubDateTime());
+
+    final List<String> categories = base.getCategories();
+    writer.writeVarint(categories.size());
+    for (int i = 0, size = categories.size(); i < size; i++) {
+      writer.writeString(categories.get(i));
+    }
+  }
+
+  private static void writeItem(Writer writer, RSSItem item) throws IOException {
+    writeBase(writer, item);
+    writer.writeString(item.getContent());
+
+    final List<MediaThumbnail> thumbnails = item.getThumbnails();
+    writer.writeVarint(thumbnails.size());
+    for (int i = 0, size = thumbnails.size(); i < size; i++) {
+      final MediaThumbnail thumbnail = thumbnails.get(i);
+      writer.writeString(thumbnail.getUrlString());
+      writer.writeSignedVarint(thumbnail.getHeight());
+      writer.writeSignedVarint(thumbnail.getWidth());
+    }
+
+    final MediaEnclosure enclosure = item.getEnclosure();
+    writer.writeBoolean(enclosure != null);
+    if (enclosure != null) {
+      writer.writeString(enclosure.getUrlString());
+      writer.writeSignedVarint(enclosure.getLength());
+      writer.writeString(enclosure.getMimeType());
+    }
+  }
+
+  /**
+   * Deserializes a feed from the remaining bytes of the buffer. Like the XML
+   * parser, the deserialization stops once a limit of the options is reached.
+   *
+   * @param config configuration which determines how category names are
+   *          shared
+   * @param options limits for the RSS items, {@code null} for none
+   * @throws IOException if the snapshot is truncated, corrupt or of another
+   *           version
+   */
+  static RSSFeed read(ByteBuffer buffer, RSSConfig config, RSSParseOptions options) throws IOException {
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not an RSS feed snapshot");
+      } else if (buffer.get() != VERSION) {
+        throw new IOException("Unsupported RSS feed snapshot version");
+      }
+
+      final Reader reader = new Reader(buffer, config);
+      final RSSFeed feed = new RSSFeed();
+      readBase(reader, feed);
+      final long lastBuildDate = buffer.getLong();
+      if (lastBuildDate != Dates.INVALID) {
+        feed.setLastBuildDateTime(lastBuildDate);
+      }
+      if (reader.readBoolean()) {
+        feed.setTTL(Integer.valueOf(reader.readSignedVarint()));
+      }
+
+      final int count = reader.readCount();
+      final int maxItems = options == null ? Integer.MAX_VALUE : options.maxItems;
+      for (int i = 0; i < count; i++) {
+        final RSSItem item = readItem(reader);
+        if (i >= maxItems || isOlderThanWatermark(item, options)) {
+          feed.setTruncated();
+          break;
+        }
+        feed.addItem(item);
+      }
+
+      return feed;
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated RSS feed snapshot");
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Corrupt RSS feed snapshot");
+    }
+  }
+
+  private static boolean isOlderThanWatermark(RSSItem item, RSSParseOptions options) {
+    if (options == null || options.watermark == Long.MIN_VALUE) {
+      return false;
+    }
+
+    final long time = item.getPubDateTime();
+    return time != Dates.INVALID && time < options.watermark;
+  }
+
+  /**
+   * Deserializes a feed from the stream. It is the responsibility of the
+   * caller to close the input stream.
+   *
+   * @param config configuration which determines how category names are
+   *          shared
+   * @param options limits for the RSS items, {@code null} for none
+   * @throws IOException if the stream cannot be read, or the snapshot is
+   *           truncated, corrupt or of another version
+   */
+  static RSSFeed read(InputStream in, RSSConfig config, RSSParseOptions options) throws IOException {
+    final java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream(BUFFER_SIZE);
+    final byte[] chunk = new byte[BUFFER_SIZE];
+    for (int n; (n = in.read(chunk)) != -1;) {
+      bytes.write(chunk, 0, n);
+    }
+
+    return read(ByteBuffer.wrap(bytes.toByteArray()), config, options);
+  }
+
+  private static void readBase(Reader reader, RSSBase base) {
+    base.setTitle(reader.readString());
+    base.setLinkString(reader.readString());
+    base.setDescription(reader.readString());
+    final long pubDate = reader.buffer.getLong();
+    if (pubDate != Dates.INVALID) {
+      base.setPubDateTime(pubDate);
+    }
+
+    for (int i = reader.readCount(); i > 0; i--) {
+      base.addCategory(reader.readCategory());
+    }
+  }
+
+  private static RSSItem readItem(Reader reader) {
+    final RSSItem item = new RSSItem((byte) 0, (byte) 0);
+    readBase(reader, item);
+    item.setContent(reader.readString());
+
+    for (int i = reader.readCount(); i > 0; i--) {
+      final String url = reader.readString();
+      final int height = reader.readSignedVarint();
+      final int width = reader.readSignedVarint();
+      item.addThumbnail(new MediaThumbnail(url, height, width));
+    }
+
+    if (reader.readBoolean()) {
+      final String url = reader.readString();
+      final int length = reader.readSignedVarint();
+      item.setEnclosure(new MediaEnclosure(url, length, reader.readString()));
+    }
+
+    return item;
+  }
+
+  /**
+   * Buffered encoder of the snapshot primitives.
+   */
+  private static final class Writer {
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    Writer(OutputStream out) {
+      this.out = out;
+    }
+
+    void write(int b) throws IOException {
+      if (position == buffer.length) {
+        flush();
+      }
+      buffer[position++] = (byte) b;
+    }
+
+    void writeBoolean(boolean value) throws IOException {
+      write(value ? 1 : 0);
+    }
+
+    void writeInt(int value) throws IOException {
+      write(value >>> 24);
+      write(value >>> 16);
+      write(value >>> 8);
+      write(value);
+    }
+
+    void writeLong(long value) throws IOException {
+      writeInt((int) (value >>> 32));
+      writeInt((int) value);
+    }
+
+    void writeVarint(int value) throws IOException {
+      while ((value & ~0x7F) != 0) {
+        write((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      write(value);
+    }
+
+    void writeSignedVarint(int value) throws IOException {
+      writeVarint((value << 1) ^ (value >> 31));
+    }
+
+    void writeString(String value) throws IOException {
+      if (value == null) {
+        writeVarint(0);
+        return;
+      }
+
+      final byte[] bytes = value.getBytes(UTF8);
+      writeVarint(bytes.length + 1);
+      if (bytes.length > buffer.length - position) {
+        flush();
+        if (bytes.length > buffer.length) {
+          out.write(bytes);
+          return;
+        }
+      }
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+    }
+
+    void flush() throws IOException {
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+
+  }
+
+  /**
+   * Decoder of the snapshot primitives. Strings are decoded straight from the
+   * backing array of heap buffers, and through a reusable array otherwise.
+   */
+  private static final class Reader {
+
+    final ByteBuffer buffer;
+    private byte[] scratch;
+
+    /**
+     * Shares category names like {@link RSSHandler}, either through the pool
+     * or per feed. Both may be {@code null}.
+     */
+    private final RSSStringPool stringPool;
+    private final StringTable categories;
+
+    Reader(ByteBuffer buffer, RSSConfig config) {
+      this.buffer = buffer;
+      this.stringPool = config.stringPool;
+      this.categories = config.deduplicate && stringPool == null ? new StringTable() : null;
+    }
+
+    boolean readBoolean() {
+      return buffer.get() != 0;
+    }
+
+    int readVarint() {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        final byte b = buffer.get();
+        value |= (b & 0x7F) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("Malformed varint");
+    }
+
+    int readSignedVarint() {
+      final int value = readVarint();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a count which cannot exceed the number of remaining bytes.
+     */
+    int readCount() {
+      final int count = readVarint();
+      if (count < 0 || count > buffer.remaining()) {
+        throw new IllegalArgumentException("Malformed count");
+      }
+      return count;
+    }
+
+    String readString() {
+      final int length = readVarint() - 1;
+      if (length == -1) {
+        return null;
+      } else if (length < 0 || length > buffer.remaining()) {
+        throw new IllegalArgumentException("Malformed string length");
+      }
+
+      if (buffer.hasArray()) {
+        final int offset = buffer.arrayOffset() + buffer.position();
+        buffer.position(buffer.position() + length);
+        return new String(buffer.array(), offset, length, UTF8);
+      }
+
+      if (scratch == null || scratch.length < length) {
+        scratch = new byte[Math.max(length, 256)];
+      }
+      buffer.get(scratch, 0, length);
+      return new String(scratch, 0, length, UTF8);
+    }
+
+    /**
+     * Reads a category name and returns the shared instance, if any.
+     */
+    String readCategory() {
+      final String category = readString();
+      if (category == null) {
+        return null;
+      } else if (stringPool != null) {
+        return stringPool.intern(category);
+      } else if (categories != null) {
+        return categories.get(category);
+      }
+      return category;
+    }
+
+  }
+
+}
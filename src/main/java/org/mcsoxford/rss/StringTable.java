@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Small open addressing table which returns the same String instance for equal
+ * character sequences. A sequence which is already in the table is looked up
+ * without allocating a String. Once the table is half full, new sequences are
+ * converted but no longer added. Only a single thread must use this table.
+ * 
+ * @author Mr Horn
+ */
+final class StringTable {
+
+  /**
+   * Default number of slots, a power of two.
+   */
+  private static final int CAPACITY = 128;
+
+  private final String[] strings;
+  private int size;
+
+  StringTable() {
+    this(CAPACITY);
+  }
+
+  /**
+   * @param capacity number of slots, which must be a power of two
+   */
+  StringTable(int capacity) {
+    strings = new String[capacity];
+  }
+
+  /**
+   * Returns a String which is equal to the specified characters.
+   */
+  String get(CharSequence chars) {
+    final int hash = hashCode(chars);
+    final int mask = strings.length - 1;
+    for (int i = hash & mask;; i = (i + 1) & mask) {
+      final String string = strings[i];
+      if (string == null) {
+        final String value = chars.toString();
+        if (size < strings.length / 2) {
+          strings[i] = value;
+          size++;
+        }
+        return value;
+      }
+
+      if (string.hashCode() == hash && string.contentEquals(chars)) {
+        return string;
+      }
+    }
+  }
+
+  /**
+   * Returns the same value as {@link String#hashCode()}.
+   */
+  static int hashCode(CharSequence chars) {
+    int hash = 0;
+    for (int i = 0, length = chars.length(); i < length; i++) {
+      hash = 31 * hash + chars.charAt(i);
+    }
+    return hash;
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Internal input stream which copies every byte it reads to an output stream.
+ * This allows a feed to be parsed while it is written to a cache file without
+ * holding the whole feed in memory.
+ * <p>
+ * Closing this stream closes neither the source nor the branch because SAX
+ * parsers may close their input before the end of the document has been read.
+ *
+ * @author Mr Horn
+ */
+final class TeeInputStream extends java.io.FilterInputStream {
+
+  private final OutputStream branch;
+
+  TeeInputStream(InputStream source, OutputStream branch) {
+    super(source);
+    this.branch = branch;
+  }
+
+  @Override
+  public int read() throws IOException {
+    final int b = in.read();
+    if (b != -1) {
+      branch.write(b);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    final int n = in.read(buffer, offset, length);
+    if (n > 0) {
+      branch.write(buffer, offset, n);
+    }
+    return n;
+  }
+
+  /**
+   * Reads and copies the skipped bytes so that the branch stays complete.
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0) {
+      return 0;
+    }
+
+    final byte[] buffer = new byte[(int) Math.min(n, 4096)];
+    long skipped = 0;
+    int length;
+    while (skipped < n && (length = read(buffer, 0, (int) Math.min(n - skipped, buffer.length))) > 0) {
+      skipped += length;
+    }
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public void mark(int readlimit) {}
+
+  @Override
+  public void reset() throws IOException {
+    throw new IOException("mark/reset not supported");
+  }
+
+  /**
+   * Copies the remaining bytes of the source to the branch.
+   */
+  void drain() throws IOException {
+    final byte[] buffer = new byte[4096];
+    while (read(buffer, 0, buffer.length) != -1) {
+      // keep on copying
+    }
+  }
+
+  /**
+   * Does not close the source or the branch.
+   */
+  @Override
+  public void close() {}
+
+}
@@ -0,0 +1,78 @@
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for reading cache files into byte buffers.
+ * 
+ * @author Mr Horn
+ */
+public class ByteBufferInputStreamTest {
+
+  private File file;
+
+  @Before
+  public void setup() throws IOException {
+    file = File.createTempFile("rss", ".xml");
+  }
+
+  @After
+  public void teardown() {
+    file.delete();
+  }
+
+  @Test
+  public void readSmallFile() throws IOException {
+    write(new byte[] { 1, 2, (byte) 0xFF });
+
+    final ByteBuffer buffer = ByteBufferInputStream.read(file);
+    assertFalse(buffer instanceof MappedByteBuffer);
+
+    final ByteBufferInputStream stream = new ByteBufferInputStream(buffer);
+    assertEquals(3, stream.available());
+    assertEquals(1, stream.read());
+    assertEquals(1, stream.skip(1));
+    assertEquals(0xFF, stream.read());
+    assertEquals(-1, stream.read());
+    assertEquals(-1, stream.read(new byte[1], 0, 1));
+
+    // the file must not be held open
+    assertTrue(file.delete());
+  }
+
+  @Test
+  public void mapLargeFile() throws IOException {
+    final byte[] bytes = new byte[(int) ByteBufferInputStream.MAP_THRESHOLD];
+    bytes[bytes.length - 1] = 42;
+    write(bytes);
+
+    final ByteBuffer buffer = ByteBufferInputStream.read(file);
+    assertTrue(buffer instanceof MappedByteBuffer);
+
+    final ByteBufferInputStream stream = new ByteBufferInputStream(buffer);
+    final byte[] copy = new byte[bytes.length + 1];
+    assertEquals(bytes.length, stream.read(copy, 0, copy.length));
+    assertEquals(42, copy[bytes.length - 1]);
+    assertEquals(-1, stream.read(copy, 0, copy.length));
+  }
+
+  private void write(byte[] bytes) throws IOException {
+    final FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+  }
+
+}
@@ -0,0 +1,121 @@
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the stored ETag and Last-Modified headers of cached feeds.
+ *
+ * @author Mr Horn
+ */
+public class CacheValidatorsTest {
+
+  private static final String LAST_MODIFIED = "Sat, 07 Sep 2002 00:00:01 GMT";
+
+  private File directory;
+  private File cacheFile;
+
+  @Before
+  public void setup() throws IOException {
+    directory = File.createTempFile("rss", "");
+    assertTrue(directory.delete());
+    assertTrue(directory.mkdir());
+    cacheFile = new File(directory, "feed.xml");
+  }
+
+  @After
+  public void teardown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void of() {
+    assertNull(CacheValidators.of(response(null, null)));
+    assertNotNull(CacheValidators.of(response("\"1\"", null)));
+    assertNotNull(CacheValidators.of(response(null, LAST_MODIFIED)));
+  }
+
+  @Test
+  public void addTo() {
+    final HttpGet request = new HttpGet("http://example.com/rss.xml");
+    CacheValidators.of(response("\"1\"", LAST_MODIFIED)).addTo(request);
+
+    assertEquals("\"1\"", request.getFirstHeader("If-None-Match").getValue());
+    assertEquals(LAST_MODIFIED, request.getFirstHeader("If-Modified-Since").getValue());
+  }
+
+  @Test
+  public void addToOnlyPresentHeaders() {
+    final HttpGet request = new HttpGet("http://example.com/rss.xml");
+    CacheValidators.of(response("\"1\"", null)).addTo(request);
+
+    assertEquals("\"1\"", request.getFirstHeader("If-None-Match").getValue());
+    assertNull(request.getFirstHeader("If-Modified-Since"));
+  }
+
+  @Test
+  public void writeAndRead() throws IOException {
+    assertTrue(cacheFile.createNewFile());
+    CacheValidators.of(response("\"1\"", LAST_MODIFIED)).write(cacheFile);
+
+    final HttpGet request = new HttpGet("http://example.com/rss.xml");
+    CacheValidators.read(cacheFile).addTo(request);
+    assertEquals("\"1\"", request.getFirstHeader("If-None-Match").getValue());
+    assertEquals(LAST_MODIFIED, request.getFirstHeader("If-Modified-Since").getValue());
+  }
+
+  @Test
+  public void readWithoutValidators() throws IOException {
+    assertTrue(cacheFile.createNewFile());
+    assertNull(CacheValidators.read(cacheFile));
+  }
+
+  @Test
+  public void readRequiresCachedFeed() throws IOException {
+    CacheValidators.of(response("\"1\"", null)).write(cacheFile);
+    assertNull(CacheValidators.read(cacheFile));
+
+    // a snapshot is as good as the XML
+    assertTrue(Snapshots.file(cacheFile).createNewFile());
+    assertNotNull(CacheValidators.read(cacheFile));
+
+    assertTrue(Snapshots.file(cacheFile).delete());
+    assertTrue(cacheFile.createNewFile());
+    assertNotNull(CacheValidators.read(cacheFile));
+  }
+
+  @Test
+  public void delete() throws IOException {
+    assertTrue(cacheFile.createNewFile());
+    CacheValidators.of(response("\"1\"", null)).write(cacheFile);
+    CacheValidators.delete(cacheFile);
+
+    assertNull(CacheValidators.read(cacheFile));
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  private static HttpResponse response(String etag, String lastModified) {
+    final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+    if (etag != null) {
+      response.addHeader("ETag", etag);
+    }
+    if (lastModified != null) {
+      response.addHeader("Last-Modified", lastModified);
+    }
+    return response;
+  }
+
+}
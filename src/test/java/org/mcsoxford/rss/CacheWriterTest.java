@@ -0,0 +1,106 @@
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the write-behind queue of cache files.
+ * 
+ * @author Mr Horn
+ */
+public class CacheWriterTest {
+
+  /**
+   * Class under test
+   */
+  private CacheWriter writer;
+
+  private File directory;
+  private File cacheFile;
+
+  @Before
+  public void setup() throws IOException {
+    directory = File.createTempFile("rss", "");
+    assertTrue(directory.delete());
+    assertTrue(directory.mkdir());
+    cacheFile = new File(directory, "feed.xml");
+
+    writer = new CacheWriter();
+  }
+
+  @After
+  public void teardown() {
+    writer.close();
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void commit() throws IOException {
+    final RSSFeed feed = new RSSFeed();
+    feed.setTitle("Example Channel");
+
+    writer.submit(cacheFile, new CacheWriter.Entry(xml("<rss/>"), feed, null));
+    writer.await(cacheFile);
+
+    assertEquals("<rss/>", read(cacheFile));
+    assertEquals("Example Channel", Snapshots.read(ByteBufferInputStream.read(Snapshots.file(cacheFile)), new RSSConfig(), null).getTitle());
+    assertEquals(2, directory.listFiles().length);
+  }
+
+  @Test
+  public void coalesce() throws IOException {
+    for (int i = 0; i < 10; i++) {
+      writer.submit(cacheFile, new CacheWriter.Entry(xml("<rss>" + i + "</rss>"), null, null));
+    }
+    writer.flush();
+
+    // pending writes are replaced and no temporary file remains
+    assertEquals("<rss>9</rss>", read(cacheFile));
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  @Test
+  public void deleteOutdatedFiles() throws IOException {
+    writer.submit(cacheFile, new CacheWriter.Entry(xml("<rss/>"), new RSSFeed(), null));
+    writer.submit(cacheFile, new CacheWriter.Entry(null, null, null));
+    writer.close();
+
+    assertFalse(cacheFile.exists());
+    assertFalse(Snapshots.file(cacheFile).exists());
+    assertEquals(0, directory.listFiles().length);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void submitAfterClose() throws IOException {
+    writer.close();
+    writer.submit(cacheFile, new CacheWriter.Entry(xml("<rss/>"), null, null));
+  }
+
+  private File xml(String content) throws IOException {
+    final File temp = CacheWriter.tempFile(cacheFile);
+    final FileOutputStream stream = new FileOutputStream(temp);
+    try {
+      stream.write(content.getBytes("UTF-8"));
+    } finally {
+      stream.close();
+    }
+    return temp;
+  }
+
+  private static String read(File file) throws IOException {
+    final ByteBuffer buffer = ByteBufferInputStream.read(file);
+    return new String(buffer.array(), 0, buffer.limit(), "UTF-8");
+  }
+
+}
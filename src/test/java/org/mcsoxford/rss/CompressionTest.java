@@ -0,0 +1,118 @@
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for compressed HTTP responses and cache files.
+ * 
+ * @author Mr Horn
+ */
+public class CompressionTest {
+
+  private static final String XML = "<rss version=\"2.0\"><channel><title>Example Channel</title></channel></rss>";
+
+  @Test
+  public void decodeGzip() throws IOException {
+    assertEquals(XML, read(Compression.decode(new ByteArrayInputStream(gzip()), Compression.GZIP)));
+  }
+
+  @Test
+  public void decodeDeflate() throws IOException {
+    assertEquals(XML, read(Compression.decode(new ByteArrayInputStream(deflate(false)), "deflate")));
+
+    // many servers omit the zlib header
+    assertEquals(XML, read(Compression.decode(new ByteArrayInputStream(deflate(true)), "deflate")));
+  }
+
+  @Test
+  public void decodeIdentity() throws IOException {
+    assertEquals(XML, read(Compression.decode(new ByteArrayInputStream(XML.getBytes("UTF-8")), null)));
+  }
+
+  @Test
+  public void closeLeavesStreamOpen() throws IOException {
+    for (String encoding : new String[] { null, Compression.GZIP }) {
+      final boolean[] closed = new boolean[1];
+      final byte[] content = encoding == null ? XML.getBytes("UTF-8") : gzip();
+      final InputStream source = new ByteArrayInputStream(content) {
+        @Override
+        public void close() {
+          closed[0] = true;
+        }
+      };
+
+      // parsers close their input when they stop early
+      Compression.decode(source, encoding).close();
+      assertFalse(String.valueOf(encoding), closed[0]);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void decodeUnsupported() throws IOException {
+    Compression.decode(new ByteArrayInputStream(new byte[0]), "br");
+  }
+
+  @Test
+  public void releaseLeavesStreamOpen() throws IOException {
+    final boolean[] closed = new boolean[1];
+    final InputStream source = new ByteArrayInputStream(gzip()) {
+      @Override
+      public void close() {
+        closed[0] = true;
+      }
+    };
+
+    Compression.release(Compression.decode(source, Compression.GZIP));
+    assertFalse(closed[0]);
+  }
+
+  @Test
+  public void decodeCache() throws IOException {
+    assertEquals(XML, read(Compression.decodeCache(ByteBuffer.wrap(gzip()))));
+    assertEquals(XML, read(Compression.decodeCache(ByteBuffer.wrap(XML.getBytes("UTF-8")))));
+  }
+
+  private static byte[] gzip() throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final OutputStream out = new GZIPOutputStream(bytes);
+    out.write(XML.getBytes("UTF-8"));
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @param nowrap {@code true} for raw deflate data without the zlib header
+   */
+  private static byte[] deflate(boolean nowrap) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+    final OutputStream out = new DeflaterOutputStream(bytes, deflater);
+    out.write(XML.getBytes("UTF-8"));
+    out.close();
+    deflater.end();
+    return bytes.toByteArray();
+  }
+
+  private static String read(InputStream stream) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[64];
+    for (int n; (n = stream.read(buffer)) != -1;) {
+      bytes.write(buffer, 0, n);
+    }
+    Compression.release(stream);
+    return new String(bytes.toByteArray(), "UTF-8");
+  }
+
+}
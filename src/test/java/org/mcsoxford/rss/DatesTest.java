@@ -0,0 +1,71 @@
+package org.mcsoxford.rss;
+
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the RFC 822 date parser in {@link Dates}.
+ *
+ * @author Mr Horn
+ */
+public class DatesTest {
+
+  @Test
+  public void rfc822() {
+    assertEquals(gmt(2010, 11, 7, 8, 22, 14), Dates.parseRfc822Millis("Sun, 07 Nov 2010 08:22:14 GMT"));
+    assertEquals(gmt(2010, 11, 7, 8, 22, 14), Dates.parseRfc822("Sun, 07 Nov 2010 08:22:14 +0000").getTime());
+  }
+
+  @Test
+  public void numericZone() {
+    assertEquals(gmt(2010, 11, 7, 7, 22, 14), Dates.parseRfc822Millis("Sun, 07 Nov 2010 08:22:14 +0100"));
+    assertEquals(gmt(2010, 11, 7, 13, 52, 14), Dates.parseRfc822Millis("Sun, 07 Nov 2010 08:22:14 -0530"));
+    assertEquals(gmt(2010, 11, 7, 7, 22, 14), Dates.parseRfc822Millis("Sun, 07 Nov 2010 08:22:14 GMT+01:00"));
+  }
+
+  @Test
+  public void namedZone() {
+    assertEquals(gmt(2010, 11, 7, 13, 22, 14), Dates.parseRfc822Millis("Sun, 07 Nov 2010 08:22:14 EST"));
+    assertEquals(gmt(2010, 7, 7, 15, 22, 14), Dates.parseRfc822Millis("Wed, 07 Jul 2010 08:22:14 PDT"));
+    assertEquals(gmt(2010, 11, 7, 8, 22, 14), Dates.parseRfc822Millis("Sun, 07 Nov 2010 08:22:14 UT"));
+    assertEquals(gmt(2010, 11, 7, 8, 22, 14), Dates.parseRfc822Millis("Sun, 07 Nov 2010 08:22:14 Z"));
+    assertEquals(Dates.INVALID, Dates.parseRfc822Millis("Sun, 07 Nov 2010 08:22:14 CEST"));
+  }
+
+  @Test
+  public void variants() {
+    assertEquals(gmt(2010, 11, 7, 8, 22, 14), Dates.parseRfc822Millis("07 Nov 2010 08:22:14 GMT"));
+    assertEquals(gmt(2010, 11, 7, 8, 22, 14), Dates.parseRfc822Millis(" Sunday 7-November-2010 08:22:14"));
+    assertEquals(gmt(2010, 11, 7, 8, 22, 0), Dates.parseRfc822Millis("Sun, 07 nov 10 08:22 GMT"));
+    assertEquals(gmt(1999, 1, 31, 0, 0, 0), Dates.parseRfc822Millis("31 Jan 99"));
+    assertEquals(gmt(2012, 2, 29, 23, 59, 59), Dates.parseRfc822Millis("Wed, 29 Feb 2012 23:59:59.123 GMT"));
+    assertEquals(gmt(1969, 12, 31, 23, 0, 0), Dates.parseRfc822Millis("Wed, 31 Dec 1969 23:00:00 GMT"));
+  }
+
+  @Test
+  public void invalid() {
+    assertEquals(Dates.INVALID, Dates.parseRfc822Millis(null));
+    assertEquals(Dates.INVALID, Dates.parseRfc822Millis(""));
+    assertEquals(Dates.INVALID, Dates.parseRfc822Millis("yesterday"));
+    assertEquals(Dates.INVALID, Dates.parseRfc822Millis("2010-11-07T08:22:14Z"));
+    assertEquals(Dates.INVALID, Dates.parseRfc822Millis("Sun, 07 Foo 2010 08:22:14 GMT"));
+    assertEquals(Dates.INVALID, Dates.parseRfc822Millis("Sun, 07 Nov 2010 25:22:14 GMT"));
+  }
+
+  @Test(expected = RSSFault.class)
+  public void invalidFault() {
+    Dates.parseRfc822("yesterday");
+  }
+
+  private static long gmt(int year, int month, int day, int hour, int minute, int second) {
+    final GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("Etc/GMT"));
+    calendar.clear();
+    calendar.set(year, month - 1, day, hour, minute, second);
+    return calendar.getTimeInMillis();
+  }
+
+}
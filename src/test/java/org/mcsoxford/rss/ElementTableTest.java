@@ -0,0 +1,39 @@
+package org.mcsoxford.rss;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the perfect hash lookup of {@link ElementTable}.
+ * 
+ * @author Mr Horn
+ */
+public class ElementTableTest {
+
+  /**
+   * Class under test
+   */
+  private final ElementTable table = new ElementTable("title", "link", "item",
+      "content:encoded", "media:thumbnail", "ttl");
+
+  @Test
+  public void known() {
+    assertEquals(0, table.get("title"));
+    assertEquals(1, table.get("link"));
+    assertEquals(2, table.get("item"));
+    assertEquals(3, table.get("content:encoded"));
+    assertEquals(4, table.get("media:thumbnail"));
+    assertEquals(5, table.get("ttl"));
+  }
+
+  @Test
+  public void unknown() {
+    assertEquals(ElementTable.NONE, table.get(""));
+    assertEquals(ElementTable.NONE, table.get("guid"));
+    assertEquals(ElementTable.NONE, table.get("tiXle"));
+    assertEquals(ElementTable.NONE, table.get("Title"));
+    assertEquals(ElementTable.NONE, table.get("media:content"));
+  }
+
+}
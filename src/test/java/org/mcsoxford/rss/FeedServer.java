@@ -0,0 +1,147 @@
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process HTTP server for tests which answers GET requests with the
+ * rssfeed.xml test resource. It supports If-None-Match and sends a
+ * Cache-Control max-age. Paths which start
+ * with "/missing" are answered with 404, and paths which start with "/slow"
+ * are answered after {@link #DELAY_MILLIS}. For paths which start with
+ * "/stall", the response stalls for {@link #STALL_MILLIS} after the start of
+ * the second item.
+ *
+ * @author Mr Horn
+ */
+final class FeedServer implements HttpHandler {
+
+  static final String ETAG = "\"rssfeed\"";
+
+  static final long DELAY_MILLIS = 300;
+
+  static final long STALL_MILLIS = 3000;
+
+  static final int MAX_AGE_SECONDS = 60;
+
+  static {
+    // avoid delayed ACKs on small responses
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final byte[] feed;
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * If-None-Match header of each request, {@code null} if it had none
+   */
+  private final List<String> conditions = new ArrayList<String>();
+
+  FeedServer() throws IOException {
+    feed = read(getClass().getClassLoader().getResourceAsStream("rssfeed.xml"));
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 16);
+    executor = Executors.newCachedThreadPool();
+
+    server.createContext("/", this);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  String uri(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + path;
+  }
+
+  /**
+   * Returns the If-None-Match header of each request so far, {@code null} for
+   * unconditional requests.
+   */
+  synchronized List<String> conditions() {
+    return new ArrayList<String>(conditions);
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      final String condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+      synchronized (this) {
+        conditions.add(condition);
+      }
+
+      final String path = exchange.getRequestURI().getPath();
+      if (path.startsWith("/slow")) {
+        try {
+          Thread.sleep(DELAY_MILLIS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      if (path.startsWith("/missing")) {
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+
+      exchange.getResponseHeaders().add("ETag", ETAG);
+      exchange.getResponseHeaders().add("Cache-Control", "max-age=" + MAX_AGE_SECONDS);
+      if (ETAG.equals(condition)) {
+        exchange.sendResponseHeaders(304, -1);
+        return;
+      }
+
+      exchange.getResponseHeaders().add("Content-Type", "application/rss+xml; charset=UTF-8");
+      final OutputStream body = exchange.getResponseBody();
+      if (path.startsWith("/stall")) {
+        // chunked, so that the client cannot tell the length of the rest
+        exchange.sendResponseHeaders(200, 0);
+        final String xml = new String(feed, "UTF-8");
+        final int split = xml.indexOf("<item>", xml.indexOf("</item>"));
+        body.write(xml.substring(0, split + "<item>".length()).getBytes("UTF-8"));
+        body.flush();
+        try {
+          Thread.sleep(STALL_MILLIS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        body.write(xml.substring(split + "<item>".length()).getBytes("UTF-8"));
+      } else {
+        exchange.sendResponseHeaders(200, feed.length);
+        body.write(feed);
+      }
+      body.close();
+    } finally {
+      exchange.close();
+    }
+  }
+
+  void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private static byte[] read(InputStream stream) throws IOException {
+    try {
+      final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      final byte[] bytes = new byte[4096];
+      for (int n; (n = stream.read(bytes)) != -1;) {
+        buffer.write(bytes, 0, n);
+      }
+      return buffer.toByteArray();
+    } finally {
+      stream.close();
+    }
+  }
+
+}
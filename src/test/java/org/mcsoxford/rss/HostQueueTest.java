@@ -0,0 +1,115 @@
+package org.mcsoxford.rss;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mcsoxford.rss.RSSLoader.RSSFuture;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the per-host scheduling of {@link HostQueue}.
+ *
+ * @author A. Horn
+ */
+public class HostQueueTest {
+
+  /**
+   * Class under test
+   */
+  private HostQueue queue;
+
+  @Before
+  public void setup() {
+    queue = new HostQueue(16, 1, /* priority */false);
+  }
+
+  @Test
+  public void host() {
+    assertEquals("example.com", HostQueue.host("http://Example.com/rss.xml"));
+    assertEquals("example.com:8080", HostQueue.host("http://example.com:8080?feed=1"));
+    assertEquals("example.com", HostQueue.host("https://user@example.com"));
+    assertNull(HostQueue.host(null));
+  }
+
+  @Test
+  public void hostLimit() {
+    final RSSFuture a1 = future("http://a.com/1", 3);
+    final RSSFuture a2 = future("http://a.com/2", 3);
+    queue.offer(a1);
+    queue.offer(a2);
+
+    assertSame(a1, queue.poll());
+    assertNull(queue.poll());
+    assertEquals(1, queue.size());
+
+    queue.release(a1);
+    assertSame(a2, queue.poll());
+  }
+
+  @Test
+  public void roundRobin() {
+    final RSSFuture a1 = future("http://a.com/1", 3);
+    final RSSFuture a2 = future("http://a.com/2", 3);
+    final RSSFuture b1 = future("http://b.com/1", 3);
+    final RSSFuture b2 = future("http://b.com/2", 3);
+    queue = new HostQueue(16, 2, /* priority */false);
+    queue.offer(a1);
+    queue.offer(a2);
+    queue.offer(b1);
+    queue.offer(b2);
+
+    assertSame(a1, queue.poll());
+    assertSame(b1, queue.poll());
+    assertSame(a2, queue.poll());
+    assertSame(b2, queue.poll());
+  }
+
+  @Test
+  public void priority() {
+    queue = new HostQueue(16, 1, /* priority */true);
+    final RSSFuture a1 = future("http://a.com/1", 1);
+    final RSSFuture a2 = future("http://a.com/2", 9);
+    final RSSFuture b1 = future("http://b.com/1", 5);
+    queue.offer(a1);
+    queue.offer(a2);
+    queue.offer(b1);
+
+    assertSame(a2, queue.poll());
+    assertSame(b1, queue.poll());
+    assertNull(queue.poll());
+
+    queue.release(a2);
+    assertSame(a1, queue.poll());
+  }
+
+  @Test
+  public void capacity() {
+    queue = new HostQueue(1, 1, /* priority */false);
+    assertTrue(queue.offer(future("http://a.com/1", 3)));
+    assertFalse(queue.offer(future("http://b.com/1", 3)));
+    assertEquals(0, queue.remainingCapacity());
+  }
+
+  @Test
+  public void sentinelAfterPendingLoads() {
+    final RSSFuture a1 = future("http://a.com/1", 3);
+    final RSSFuture a2 = future("http://a.com/2", 3);
+    final RSSFuture sentinel = future(null, 7);
+    queue.offer(a1);
+    queue.offer(a2);
+    queue.offer(sentinel);
+
+    assertSame(a1, queue.poll());
+    assertNull(queue.poll());
+
+    queue.release(a1);
+    assertSame(a2, queue.poll());
+    assertSame(sentinel, queue.poll());
+    assertTrue(queue.isEmpty());
+  }
+
+  private static RSSFuture future(String uri, int priority) {
+    return new RSSFuture(uri, RSSReader.CONFIG_ONLINE_ONLY, priority);
+  }
+
+}
@@ -0,0 +1,53 @@
+package org.mcsoxford.rss;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the upper bound of pooled connection lifetimes.
+ * 
+ * @author Mr Horn
+ */
+public class KeepAliveStrategyTest {
+
+  private static final long MAX_MILLIS = 30000;
+
+  /**
+   * Class under test
+   */
+  private final RSSReader.KeepAliveStrategy strategy = new RSSReader.KeepAliveStrategy(MAX_MILLIS);
+
+  @Test
+  public void withoutHeader() {
+    assertEquals(MAX_MILLIS, duration(null));
+  }
+
+  @Test
+  public void shorterTimeout() {
+    assertEquals(5000, duration("timeout=5, max=100"));
+  }
+
+  @Test
+  public void longerTimeout() {
+    assertEquals(MAX_MILLIS, duration("timeout=600"));
+  }
+
+  @Test
+  public void invalidTimeout() {
+    assertEquals(MAX_MILLIS, duration("timeout=forever"));
+  }
+
+  private long duration(String keepAlive) {
+    final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+    if (keepAlive != null) {
+      response.addHeader("Keep-Alive", keepAlive);
+    }
+    return strategy.getKeepAliveDuration(response, new BasicHttpContext());
+  }
+
+}
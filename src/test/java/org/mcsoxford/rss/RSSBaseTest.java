@@ -69,4 +69,31 @@ public class RSSBaseTest {
     assertTrue(base.equals(other));
   }
 
+  @Test
+  public void linkParsedOnFirstAccess() {
+    base.setLinkString("http://example.com/");
+    final android.net.Uri link = base.getLink();
+    assertEquals(android.net.Uri.parse("http://example.com/"), link);
+    assertSame(link, base.getLink());
+
+    final Foo other = new Foo();
+    other.setLink(android.net.Uri.parse("http://example.com/"));
+    assertEquals(base, other);
+    assertEquals(base.hashCode(), other.hashCode());
+  }
+
+  @Test
+  public void pubDateParsedOnFirstAccess() {
+    base.setPubDateText("Sun, 07 Nov 2010 08:22:14 GMT");
+    final long time = base.getPubDateTime();
+    assertEquals(1289118134000L, time);
+    assertEquals(time, base.getPubDateTime());
+    assertEquals(time, base.getPubDate().getTime());
+
+    base.setPubDateText("invalid");
+    assertEquals(Long.MIN_VALUE, base.getPubDateTime());
+    assertEquals(Long.MIN_VALUE, base.getPubDateTime());
+    assertNull(base.getPubDate());
+  }
+
 }
@@ -0,0 +1,77 @@
+package org.mcsoxford.rss;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the in-memory {@link RSSFeedCache}.
+ *
+ * @author Mr Horn
+ */
+public class RSSFeedCacheTest {
+
+  @Test
+  public void getMissing() {
+    assertNull(new RSSFeedCache(1).get("http://example.com/"));
+  }
+
+  @Test
+  public void evictLeastRecentlyUsed() {
+    final RSSFeedCache cache = new RSSFeedCache(2);
+    final RSSFeed a = feed("a");
+    final RSSFeed b = feed("b");
+    final RSSFeed c = feed("c");
+    cache.put("a", a);
+    cache.put("b", b);
+
+    // "b" becomes the least recently used feed
+    assertSame(a, cache.get("a"));
+    cache.put("c", c);
+
+    assertEquals(2, cache.size());
+    assertSame(a, cache.get("a"));
+    assertNull(cache.get("b"));
+    assertSame(c, cache.get("c"));
+  }
+
+  @Test
+  public void evictBySize() {
+    final RSSFeed a = feed("a");
+    final long size = RSSFeedCache.estimateSize(a);
+    final RSSFeedCache cache = new RSSFeedCache(10, size + size / 2);
+    cache.put("a", a);
+    cache.put("b", feed("b"));
+
+    assertEquals(1, cache.size());
+    assertNull(cache.get("a"));
+  }
+
+  @Test
+  public void withoutTTL() {
+    final RSSFeedCache cache = new RSSFeedCache(1);
+    final RSSFeed feed = feed("a");
+    feed.setTTL(Integer.valueOf(0));
+    cache.put("a", feed);
+    assertSame(feed, cache.get("a"));
+  }
+
+  @Test
+  public void revalidate() {
+    final RSSFeedCache cache = new RSSFeedCache(1);
+    final RSSFeed feed = feed("a");
+    feed.setTTL(Integer.valueOf(60));
+    cache.put("a", feed);
+
+    assertSame(feed, cache.revalidate("a"));
+    assertSame(feed, cache.get("a"));
+    assertNull(cache.revalidate("b"));
+  }
+
+  private static RSSFeed feed(String title) {
+    final RSSFeed feed = new RSSFeed();
+    feed.setTitle(title);
+    return feed;
+  }
+
+}
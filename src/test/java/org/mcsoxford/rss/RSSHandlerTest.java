@@ -4,6 +4,7 @@ import java.util.Iterator;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.xml.sax.SAXException;
 
 import static org.junit.Assert.*;
 
@@ -25,63 +26,63 @@ public class RSSHandlerTest {
   }
 
   @Test
-  public void isBufferingChannel() {
+  public void isBufferingChannel() throws SAXException {
     assertFalse(handler.isBuffering());
     handler.startElement(null, null, "channel", null);
     assertFalse(handler.isBuffering());
   }
 
   @Test
-  public void isBufferingItem() {
+  public void isBufferingItem() throws SAXException {
     assertFalse(handler.isBuffering());
     handler.startElement(null, null, "item", null);
     assertFalse(handler.isBuffering());
   }
 
   @Test
-  public void isBufferingTitle() {
+  public void isBufferingTitle() throws SAXException {
     assertFalse(handler.isBuffering());
     handler.startElement(null, null, "title", null);
     assertTrue(handler.isBuffering());
   }
 
   @Test
-  public void isBufferingDescription() {
+  public void isBufferingDescription() throws SAXException {
     assertFalse(handler.isBuffering());
     handler.startElement(null, null, "description", null);
     assertTrue(handler.isBuffering());
   }
 
   @Test
-  public void isBufferingContent() {
+  public void isBufferingContent() throws SAXException {
     assertFalse(handler.isBuffering());
     handler.startElement(null, null, "content:encoded", null);
     assertTrue(handler.isBuffering());
   }
 
   @Test
-  public void isBufferingCategory() {
+  public void isBufferingCategory() throws SAXException {
     assertFalse(handler.isBuffering());
     handler.startElement(null, null, "category", null);
     assertTrue(handler.isBuffering());
   }
 
   @Test
-  public void isBufferingLink() {
+  public void isBufferingLink() throws SAXException {
     assertFalse(handler.isBuffering());
     handler.startElement(null, null, "link", null);
     assertTrue(handler.isBuffering());
   }
 
   @Test
-  public void isBufferingPubDate() {
+  public void isBufferingPubDate() throws SAXException {
     assertFalse(handler.isBuffering());
     handler.startElement(null, null, "pubDate", null);
     assertTrue(handler.isBuffering());
   }
 
   @Test
-  public void isBufferingThumbnail() {
+  public void isBufferingThumbnail() throws SAXException {
     // setup
     isBufferingItem();
 
@@ -94,19 +95,19 @@ public class RSSHandlerTest {
   }
 
   @Test
-  public void parseChannelWithThumbnail() {
+  public void parseChannelWithThumbnail() throws SAXException {
     // no exception
     handler.startElement(null, null, "media:thumbnail", null);
   }
 
   @Test
-  public void parseThumbnailWithoutUrl() {
+  public void parseThumbnailWithoutUrl() throws SAXException {
     // no exception
     handler.startElement(null, null, "media:thumbnail", new org.xml.sax.helpers.AttributesImpl());
   }
 
   @Test
-  public void channelTitle() {
+  public void channelTitle() throws SAXException {
     assertNull(handler.feed().getTitle());
     handler.startElement(null, null, "title", null);
     handler.characters(new char[] { 'a', 'b', 'c' }, 0, 3);
@@ -115,7 +116,7 @@ public class RSSHandlerTest {
   }
 
   @Test
-  public void itemTitle() {
+  public void itemTitle() throws SAXException {
     assertNull(handler.feed().getTitle());
     assertFalse(handler.feed().getItems().iterator().hasNext());
     handler.startElement(null, null, "item", null);
@@ -132,7 +133,7 @@ public class RSSHandlerTest {
   }
 
   @Test
-  public void items() {
+  public void items() throws SAXException {
     assertFalse(handler.feed().getItems().iterator().hasNext());
 
     final char[][] titles = { { 'a', 'b', 'c' }, { '1', '2', '3' } };
@@ -150,4 +151,44 @@ public class RSSHandlerTest {
     assertEquals("123", items.next().getTitle());
     assertFalse(items.hasNext());
   }
+
+  @Test
+  public void bufferClearedPerElement() throws SAXException {
+    final char[] text = new char[20000];
+    java.util.Arrays.fill(text, 'x');
+    handler.startElement(null, null, "description", null);
+    handler.characters(text, 0, text.length);
+    handler.endElement(null, null, "description");
+    assertFalse(handler.isBuffering());
+
+    handler.startElement(null, null, "title", null);
+    handler.characters(new char[] { 'a', 'b', 'c' }, 0, 3);
+    handler.endElement(null, null, "title");
+
+    assertEquals(text.length, handler.feed().getDescription().length());
+    assertEquals("abc", handler.feed().getTitle());
+  }
+
+  @Test
+  public void deduplicateCategories() throws SAXException {
+    for (int i = 0; i < 2; i++) {
+      handler.startElement(null, null, "item", null);
+      handler.startElement(null, null, "category", null);
+      handler.characters("Sport".toCharArray(), 0, 5);
+      handler.endElement(null, null, "category");
+      handler.endElement(null, null, "item");
+    }
+
+    final java.util.List<RSSItem> items = handler.feed().getItems();
+    assertEquals("Sport", items.get(0).getCategories().iterator().next());
+    assertSame(items.get(0).getCategories().iterator().next(),
+        items.get(1).getCategories().iterator().next());
+  }
+
+  @Test
+  public void itemsRandomAccess() {
+    final java.util.List<RSSItem> items = handler.feed().getItems();
+    assertTrue(items instanceof java.util.RandomAccess);
+    assertSame(items, handler.feed().getItems());
+  }
 }
@@ -0,0 +1,222 @@
+package org.mcsoxford.rss;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the asynchronous loader. Loads from the cache complete immediately
+ * without network access because the loader's reader has no cache files.
+ *
+ * @author Mr Horn
+ */
+public class RSSLoaderTest {
+
+  private static final String THREAD_NAME = "Asynchronous RSS feed loader";
+
+  private static final String URI = "http://example.com/rss.xml";
+
+  @Test
+  public void stopFifoWorkers() throws Exception {
+    final RSSLoader loader = RSSLoader.fifo(100, 4);
+    final List<Thread> threads = threads(4);
+    final List<Future<RSSFeed>> futures = load(loader, 50, RSSLoader.RSSFuture.DEFAULT_PRIORITY);
+    loader.stop();
+
+    assertDelivered(loader, futures);
+    assertStopped(threads);
+  }
+
+  @Test
+  public void stopPriorityWorkers() throws Exception {
+    final RSSLoader loader = RSSLoader.priority(100, 4);
+    final List<Thread> threads = threads(4);
+
+    // only loads with a priority above seven are completed after stop()
+    final List<Future<RSSFeed>> futures = load(loader, 50, 8);
+    loader.stop();
+
+    assertDelivered(loader, futures);
+    assertStopped(threads);
+  }
+
+  @Test
+  public void dispatchToExecutor() throws Exception {
+    final ExecutorService service = Executors.newCachedThreadPool();
+    final AtomicInteger tasks = new AtomicInteger();
+    final RSSLoader loader = RSSLoader.fifo(new Executor() {
+      @Override
+      public void execute(Runnable task) {
+        tasks.incrementAndGet();
+        service.execute(task);
+      }
+    }, 4);
+    final List<Thread> threads = threads(1);
+
+    final List<Future<RSSFeed>> futures = load(loader, 50, RSSLoader.RSSFuture.DEFAULT_PRIORITY);
+    loader.stop();
+
+    assertDelivered(loader, futures);
+    assertStopped(threads);
+    assertEquals(50, tasks.get());
+    service.shutdown();
+  }
+
+  @Test
+  public void boundConcurrency() throws Exception {
+    // tasks only run when the test says so
+    final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<Runnable>();
+    final RSSLoader loader = RSSLoader.priority(new Executor() {
+      @Override
+      public void execute(Runnable task) {
+        tasks.add(task);
+      }
+    }, 2);
+    final List<Thread> threads = threads(1);
+    final List<Future<RSSFeed>> futures = load(loader, 5, 8);
+
+    final Runnable first = tasks.poll(5, TimeUnit.SECONDS);
+    final Runnable second = tasks.poll(5, TimeUnit.SECONDS);
+    assertNotNull(second);
+    assertNull("more than two tasks in flight", tasks.poll(100, TimeUnit.MILLISECONDS));
+
+    // a completed task frees a slot for the next one
+    first.run();
+    final Runnable third = tasks.poll(5, TimeUnit.SECONDS);
+    assertNotNull(third);
+    assertNull(tasks.poll(100, TimeUnit.MILLISECONDS));
+
+    loader.stop();
+    second.run();
+    third.run();
+    for (int i = 0; i < 2; i++) {
+      tasks.poll(5, TimeUnit.SECONDS).run();
+    }
+
+    assertDelivered(loader, futures);
+    assertStopped(threads);
+  }
+
+  @Test
+  public void rejectedExecution() throws Exception {
+    final RSSLoader loader = RSSLoader.fifo(new Executor() {
+      @Override
+      public void execute(Runnable task) {
+        throw new RejectedExecutionException();
+      }
+    }, 1);
+    final List<Thread> threads = threads(1);
+    final List<Future<RSSFeed>> futures = load(loader, 3, RSSLoader.RSSFuture.DEFAULT_PRIORITY);
+    loader.stop();
+
+    // the permits of rejected tasks are released, so the dispatcher stops
+    assertDelivered(loader, futures);
+    assertStopped(threads);
+    for (Future<RSSFeed> future : futures) {
+      try {
+        future.get();
+        fail("rejected load must fail");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof RSSFault);
+        assertTrue(e.getCause().getCause() instanceof RejectedExecutionException);
+      }
+    }
+  }
+
+  @Test
+  public void deliverFailedLoad() throws Exception {
+    final FeedServer server = new FeedServer();
+    final RSSLoader loader = RSSLoader.fifo();
+    try {
+      final Future<RSSFeed> future = loader.load(server.uri("missing"), RSSReader.CONFIG_ONLINE_ONLY);
+      assertSame(future, loader.poll(5, TimeUnit.SECONDS));
+      assertTrue(future.isDone());
+      try {
+        future.get();
+        fail("missing feed must fail");
+      } catch (ExecutionException e) {
+        assertEquals(404, ((RSSReaderException) e.getCause()).getStatus());
+      }
+    } finally {
+      loader.stop();
+      server.stop();
+    }
+  }
+
+  @Test
+  public void getWithoutFeed() throws Exception {
+    final RSSLoader loader = RSSLoader.fifo();
+    try {
+      // nothing is cached, so the load completes without a feed
+      final Future<RSSFeed> future = loader.load(URI, RSSReader.CONFIG_CACHED_ONLY);
+      assertSame(future, loader.poll(5, TimeUnit.SECONDS));
+      assertNull(future.get(1, TimeUnit.SECONDS));
+      assertNull(future.get());
+    } finally {
+      loader.stop();
+    }
+  }
+
+  private static List<Future<RSSFeed>> load(RSSLoader loader, int count, int priority) {
+    final List<Future<RSSFeed>> futures = new ArrayList<Future<RSSFeed>>(count);
+    for (int i = 0; i < count; i++) {
+      final Future<RSSFeed> future = loader.load(URI, RSSReader.CONFIG_CACHED_ONLY, priority);
+      assertNotNull(future);
+      futures.add(future);
+    }
+    return futures;
+  }
+
+  /**
+   * Asserts that each future is taken exactly once and nothing else.
+   */
+  private static void assertDelivered(RSSLoader loader, List<Future<RSSFeed>> futures)
+      throws InterruptedException {
+    final Set<Future<RSSFeed>> pending = new HashSet<Future<RSSFeed>>(futures);
+    while (!pending.isEmpty()) {
+      final Future<RSSFeed> future = loader.poll(5, TimeUnit.SECONDS);
+      assertNotNull("missing result", future);
+      assertTrue(pending.remove(future));
+      assertTrue(future.isDone());
+    }
+    assertNull(loader.poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * Returns the running threads of a new loader. Loaders of other tests have
+   * been stopped already.
+   */
+  private static List<Thread> threads(int count) {
+    final List<Thread> threads = new ArrayList<Thread>(count);
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().startsWith(THREAD_NAME) && thread.isAlive()) {
+        threads.add(thread);
+      }
+    }
+    assertEquals(count, threads.size());
+    return threads;
+  }
+
+  private static void assertStopped(List<Thread> threads) throws InterruptedException {
+    for (Thread thread : threads) {
+      thread.join(5000);
+      assertFalse(thread.getName(), thread.isAlive());
+    }
+  }
+
+}
@@ -83,6 +83,135 @@ public class RSSParserTest {
     assertFalse(items.hasNext());
   }
 
+  @Test
+  public void parseWithListener() throws Exception {
+    final java.util.List<String> titles = new java.util.ArrayList<String>();
+    final RSSFeed feed;
+    try {
+      feed = parser.parse(stream, new RSSItemListener() {
+        @Override
+        public boolean onItem(RSSFeed feed, RSSItem item) {
+          assertEquals("Example Channel", feed.getTitle());
+          titles.add(item.getTitle());
+
+          // retain only the first item
+          return titles.size() == 1;
+        }
+      });
+    } finally {
+      Resources.closeQuietly(stream);
+    }
+
+    assertEquals(2, titles.size());
+    assertEquals("News for November", titles.get(0));
+    assertEquals("News for October", titles.get(1));
+    assertEquals(1, feed.getItems().size());
+    assertEquals("News for November", feed.getItems().get(0).getTitle());
+  }
+
+  @Test
+  public void parseMaxItems() throws Exception {
+    final RSSFeed feed;
+    try {
+      feed = parser.parse(stream, new RSSParseOptions(1, null));
+    } finally {
+      Resources.closeQuietly(stream);
+    }
+
+    assertTrue(feed.isTruncated());
+    assertEquals("Example Channel", feed.getTitle());
+    assertEquals(1, feed.getItems().size());
+    assertEquals("News for November", feed.getItems().get(0).getTitle());
+  }
+
+  @Test
+  public void parseWatermark() throws Exception {
+    final GregorianCalendar calendar = new GregorianCalendar(2010, 10, 8);
+    calendar.setTimeZone(TimeZone.getTimeZone("Etc/GMT"));
+
+    final RSSFeed feed;
+    try {
+      feed = parser.parse(stream, new RSSParseOptions(0, calendar.getTime()));
+    } finally {
+      Resources.closeQuietly(stream);
+    }
+
+    assertTrue(feed.isTruncated());
+    assertTrue(feed.getItems().isEmpty());
+  }
+
+  @Test
+  public void parseWithoutLimits() throws Exception {
+    final RSSFeed feed;
+    try {
+      feed = parser.parse(stream, new RSSParseOptions(0, null));
+    } finally {
+      Resources.closeQuietly(stream);
+    }
+
+    assertFalse(feed.isTruncated());
+    assertEquals(2, feed.getItems().size());
+  }
+
+  @Test
+  public void parseWithHashDispatch() throws Exception {
+    parser = new RSSParser(new RSSConfig.Builder().dispatch(RSSConfig.DISPATCH_HASH).build());
+
+    final RSSFeed feed = parse(stream);
+    assertEquals("Example Channel", feed.getTitle());
+    assertEquals(2, feed.getItems().size());
+    assertEquals("News for October", feed.getItems().get(1).getTitle());
+    assertEquals(2, feed.getItems().get(1).getCategories().size());
+  }
+
+  @Test
+  public void parseSelectedFields() throws Exception {
+    parser = new RSSParser(new RSSConfig.Builder()
+        .fields(RSSConfig.FIELD_TITLE | RSSConfig.FIELD_LINK).build());
+
+    final RSSFeed feed = parse(stream);
+    assertEquals("Example Channel", feed.getTitle());
+    assertNull(feed.getDescription());
+    assertEquals(2, feed.getItems().size());
+
+    for (RSSItem item : feed.getItems()) {
+      assertNotNull(item.getTitle());
+      assertNotNull(item.getLink());
+      assertNull(item.getDescription());
+      assertNull(item.getContent());
+      assertNull(item.getPubDate());
+      assertTrue(item.getCategories().isEmpty());
+      assertTrue(item.getThumbnails().isEmpty());
+    }
+  }
+
+  @Test
+  public void parseWithStringPool() throws Exception {
+    parser = new RSSParser(new RSSConfig.Builder().stringPool(new RSSStringPool(64)).build());
+
+    final RSSFeed first = parse(stream);
+    final RSSFeed second = parse(getClass().getClassLoader().getResourceAsStream("rssfeed.xml"));
+    assertEquals("Daily news", first.getItems().get(1).getCategories().get(0));
+    assertSame(first.getItems().get(1).getCategories().get(0),
+        second.getItems().get(1).getCategories().get(0));
+  }
+
+  @Test
+  public void parseLazyDates() throws Exception {
+    parser = new RSSParser(new RSSConfig.Builder().lazyDates(true).build());
+
+    final RSSFeed feed = parse(stream);
+    final GregorianCalendar calendar = new GregorianCalendar(2010, 10, 07, 8, 22, 14);
+    calendar.setTimeZone(TimeZone.getTimeZone("Etc/GMT"));
+
+    final RSSItem item = feed.getItems().get(0);
+    assertEquals(calendar.getTimeInMillis(), item.getPubDateTime());
+    assertEquals(calendar.getTime(), item.getPubDate());
+    assertSame(item.getPubDate(), item.getPubDate());
+    assertEquals(Long.MIN_VALUE, feed.getItems().get(1).getPubDateTime());
+    assertNull(feed.getItems().get(1).getPubDate());
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void parseStreamNullArgument() throws Exception {
     parse(null);
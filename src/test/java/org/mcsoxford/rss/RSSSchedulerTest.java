@@ -0,0 +1,213 @@
+package org.mcsoxford.rss;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.mcsoxford.rss.RSSScheduler.Subscription;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the adaptive poll interval and the polling of {@link RSSScheduler}.
+ * 
+ * @author Mr Horn
+ */
+public class RSSSchedulerTest {
+
+  private static final long MINUTE = 60 * 1000;
+  private static final long MIN = 5 * MINUTE;
+  private static final long MAX = 24 * 60 * MINUTE;
+
+  private final Subscription subscription = new Subscription("http://example.com/rss.xml", 0);
+
+  @Test
+  public void backOffUnchangedFeed() {
+    final RSSFeed feed = feed(1000);
+    assertTrue(subscription.loaded(feed, 0, MIN, MAX));
+    assertEquals(Subscription.INITIAL_INTERVAL_MILLIS, subscription.intervalMillis);
+
+    assertFalse(subscription.loaded(feed(1000), 0, MIN, MAX));
+    assertEquals(90 * MINUTE, subscription.intervalMillis);
+
+    for (int i = 0; i < 20; i++) {
+      subscription.loaded(feed, 0, MIN, MAX);
+    }
+    assertEquals(MAX, subscription.intervalMillis);
+  }
+
+  @Test
+  public void followChangeFrequency() {
+    final long hour = 60 * MINUTE;
+    subscription.loaded(feed(0), 0, MIN, MAX);
+
+    // a new item every hour
+    assertTrue(subscription.loaded(feed(hour), hour, MIN, MAX));
+    assertEquals(hour, subscription.changeIntervalMillis);
+    assertEquals(hour / 2, subscription.intervalMillis);
+
+    // a new item after three hours is weighted in
+    assertTrue(subscription.loaded(feed(4 * hour), 4 * hour, MIN, MAX));
+    assertEquals((long) (0.3 * 3 * hour + 0.7 * hour), subscription.changeIntervalMillis);
+    assertEquals(subscription.changeIntervalMillis / 2, subscription.intervalMillis);
+  }
+
+  @Test
+  public void respectTTL() {
+    final RSSFeed feed = feed(0);
+    feed.setTTL(Integer.valueOf(180));
+    subscription.loaded(feed, 0, MIN, MAX);
+    assertEquals(180 * MINUTE, subscription.intervalMillis);
+  }
+
+  @Test
+  public void respectExpires() {
+    final RSSFeed feed = feed(0);
+    feed.setExpires(1000 + 120 * MINUTE);
+    subscription.loaded(feed, 1000, MIN, MAX);
+    assertEquals(120 * MINUTE, subscription.intervalMillis);
+  }
+
+  @Test
+  public void ignoreLastBuildDate() {
+    final RSSFeed feed = feed(0);
+    final RSSFeed rebuilt = feed(0);
+    rebuilt.setLastBuildDateTime(60 * MINUTE);
+    assertEquals(Subscription.fingerprint(feed), Subscription.fingerprint(rebuilt));
+    assertFalse(Subscription.fingerprint(feed) == Subscription.fingerprint(feed(1)));
+  }
+
+  @Test
+  public void backOffFailures() {
+    assertEquals(MIN, subscription.failed(MIN, MAX));
+    assertEquals(2 * MIN, subscription.failed(MIN, MAX));
+    assertEquals(4 * MIN, subscription.failed(MIN, MAX));
+    for (int i = 0; i < 30; i++) {
+      subscription.failed(MIN, MAX);
+    }
+    assertEquals(MAX, subscription.failed(MIN, MAX));
+
+    // success resets the failures
+    subscription.loaded(feed(0), 0, MIN, MAX);
+    assertEquals(MIN, subscription.failed(MIN, MAX));
+  }
+
+  @Test
+  public void retryBusyLoaderSoon() throws InterruptedException {
+    // a loader whose queue is full refuses every load, but still stops
+    final RSSLoader loader = new RSSLoader(new LinkedBlockingQueue<RSSLoader.RSSFuture>() {
+      @Override
+      public boolean offer(RSSLoader.RSSFuture future) {
+        return future.uri == null && super.offer(future);
+      }
+    });
+    final RSSScheduler scheduler = new RSSScheduler(loader, new Listener(), MIN, MAX);
+    try {
+      final long start = System.currentTimeMillis();
+      scheduler.subscribe(subscription.uri);
+      for (int i = 0; i < 100 && scheduler.getNextPollTime(subscription.uri) < start + 1000; i++) {
+        Thread.sleep(50);
+      }
+
+      final long delay = scheduler.getNextPollTime(subscription.uri) - start;
+      assertTrue(delay >= 1000);
+      assertTrue("busy loader must not back off", delay < MIN);
+    } finally {
+      scheduler.stop();
+    }
+  }
+
+  @Test
+  public void stopWithLoader() throws Exception {
+    final FeedServer server = new FeedServer();
+    final AtomicInteger loaded = new AtomicInteger();
+    final RSSLoader loader = RSSLoader.fifo();
+    final RSSScheduler scheduler = new RSSScheduler(loader, new Listener() {
+      @Override
+      public void onLoaded(String uri, RSSFeed feed, boolean changed) {
+        loaded.incrementAndGet();
+      }
+    }, 100, 200);
+    try {
+      assertTrue(scheduler.subscribe(server.uri("rss.xml")));
+      for (int i = 0; i < 100 && loaded.get() == 0; i++) {
+        Thread.sleep(50);
+      }
+      assertEquals(1, loaded.get());
+
+      // the next poll finds the loader stopped, which stops the scheduler
+      loader.stop();
+      boolean subscribed = true;
+      for (int i = 0; i < 100 && subscribed; i++) {
+        Thread.sleep(50);
+        subscribed = scheduler.subscribe(server.uri("other.xml"));
+        scheduler.unsubscribe(server.uri("other.xml"));
+      }
+      assertFalse("stopped loader must stop the scheduler", subscribed);
+      assertEquals(1, server.conditions().size());
+    } finally {
+      scheduler.stop();
+      server.stop();
+    }
+  }
+
+  @Test
+  public void dropResultOfPreviousSubscription() throws Exception {
+    final FeedServer server = new FeedServer();
+    final AtomicInteger loaded = new AtomicInteger();
+    final RSSScheduler scheduler = new RSSScheduler(RSSLoader.fifo(16, 2), new Listener() {
+      @Override
+      public void onLoaded(String uri, RSSFeed feed, boolean changed) {
+        loaded.incrementAndGet();
+      }
+    }, MIN, MAX);
+    try {
+      final String uri = server.uri("slow");
+      scheduler.subscribe(uri);
+      for (int i = 0; i < 100 && server.conditions().isEmpty(); i++) {
+        Thread.sleep(10);
+      }
+
+      // subscribe again while the first poll is in flight
+      assertTrue(scheduler.unsubscribe(uri));
+      assertTrue(scheduler.subscribe(uri));
+      for (int i = 0; i < 100 && loaded.get() == 0; i++) {
+        Thread.sleep(50);
+      }
+      Thread.sleep(2 * FeedServer.DELAY_MILLIS);
+
+      assertEquals(2, server.conditions().size());
+      assertEquals(1, loaded.get());
+      assertTrue(scheduler.getNextPollTime(uri) > System.currentTimeMillis() + MIN);
+    } finally {
+      scheduler.stop();
+      server.stop();
+    }
+  }
+
+  /**
+   * Returns a feed whose newest item was published at the specified time.
+   */
+  private static RSSFeed feed(long published) {
+    final RSSFeed feed = new RSSFeed();
+    final RSSItem item = new RSSItem((byte) 0, (byte) 0);
+    item.setTitle("News at " + published);
+    item.setPubDateTime(published);
+    feed.addItem(item);
+    return feed;
+  }
+
+  /**
+   * Ignores the outcome of polls.
+   */
+  private static class Listener implements RSSScheduler.Listener {
+
+    @Override
+    public void onLoaded(String uri, RSSFeed feed, boolean changed) {}
+
+    @Override
+    public void onFailed(String uri, Throwable cause) {}
+
+  }
+
+}
@@ -0,0 +1,43 @@
+package org.mcsoxford.rss;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the bounded {@link RSSStringPool}.
+ * 
+ * @author Mr Horn
+ */
+public class RSSStringPoolTest {
+
+  /**
+   * Class under test
+   */
+  private final RSSStringPool pool = new RSSStringPool(16);
+
+  @Test
+  public void intern() {
+    final String sport = pool.intern(new StringBuilder("Sport"));
+    assertEquals("Sport", sport);
+    assertSame(sport, pool.intern(new StringBuilder("Sport")));
+    assertSame(sport, pool.intern("Sport"));
+    assertEquals("", pool.intern(""));
+  }
+
+  @Test
+  public void bounded() {
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("category " + i, pool.intern("category " + i));
+    }
+
+    final String world = pool.intern("World");
+    assertSame(world, pool.intern("World"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void capacity() {
+    new RSSStringPool(0);
+  }
+
+}
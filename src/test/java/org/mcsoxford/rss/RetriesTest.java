@@ -0,0 +1,88 @@
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the retry policy of transient load failures.
+ * 
+ * @author Mr Horn
+ */
+public class RetriesTest {
+
+  @Test
+  public void retryableStatus() {
+    assertTrue(Retries.isRetryable(429));
+    assertTrue(Retries.isRetryable(500));
+    assertTrue(Retries.isRetryable(503));
+    assertFalse(Retries.isRetryable(304));
+    assertFalse(Retries.isRetryable(404));
+  }
+
+  @Test
+  public void retryableFault() {
+    assertTrue(Retries.isRetryable(new RSSFault(new SocketTimeoutException())));
+    assertFalse(Retries.isRetryable(new RSSFault(new ClientProtocolException())));
+    assertFalse(Retries.isRetryable(new RSSFault(new Retries.DeadlineExceededException())));
+    assertFalse(Retries.isRetryable(new RSSFault("Malformed feed")));
+  }
+
+  @Test
+  public void backoffWithFullJitter() {
+    final Random random = new Random(42);
+    for (int attempt = 0; attempt < 64; attempt++) {
+      final long cap = Math.min(30000, 500L << Math.min(attempt, 20));
+      final long delay = Retries.backoffMillis(attempt, 500, 30000, random);
+      assertTrue(delay >= 0);
+      assertTrue(delay <= cap);
+    }
+  }
+
+  @Test
+  public void retryAfterSeconds() {
+    final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Service Unavailable");
+    assertEquals(-1, Retries.retryAfterMillis(response, 0));
+
+    response.setHeader("Retry-After", " 120 ");
+    assertEquals(120000, Retries.retryAfterMillis(response, 0));
+  }
+
+  @Test
+  public void retryAfterDate() {
+    final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 429, "Too Many Requests");
+    response.setHeader("Retry-After", "Sun, 06 Nov 1994 08:49:37 GMT");
+
+    final long date = Dates.parseRfc822Millis("Sun, 06 Nov 1994 08:49:37 GMT");
+    assertEquals(5000, Retries.retryAfterMillis(response, date - 5000));
+    assertEquals(0, Retries.retryAfterMillis(response, date + 5000));
+
+    response.setHeader("Retry-After", "soon");
+    assertEquals(-1, Retries.retryAfterMillis(response, date));
+  }
+
+  @Test
+  public void deadline() throws IOException {
+    final InputStream stream = new ByteArrayInputStream(new byte[2]);
+    assertSame(stream, Retries.withDeadline(stream, Long.MAX_VALUE));
+    assertEquals(0, Retries.withDeadline(stream, System.currentTimeMillis() + 60000).read());
+
+    try {
+      Retries.withDeadline(stream, System.currentTimeMillis() - 1).read();
+      fail();
+    } catch (Retries.DeadlineExceededException e) {
+      // expected
+    }
+  }
+
+}
@@ -0,0 +1,140 @@
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of conditional requests for cached feeds against a local server.
+ *
+ * @author Mr Horn
+ */
+public class RevalidationTest implements RSSReader.RSSReaderCallbacks {
+
+  private FeedServer server;
+  private RSSReader reader;
+  private File directory;
+  private File cacheFile;
+
+  @Before
+  public void setup() throws IOException {
+    directory = File.createTempFile("rss", "");
+    assertTrue(directory.delete());
+    assertTrue(directory.mkdir());
+    cacheFile = new File(directory, "feed.xml");
+
+    server = new FeedServer();
+    reader = new RSSReader();
+    reader.setCallbacks(this);
+  }
+
+  @After
+  public void teardown() {
+    reader.close();
+    server.stop();
+    delete(directory);
+  }
+
+  @Override
+  public boolean onRequestNetworkState() {
+    return true;
+  }
+
+  @Override
+  public File onRequestCacheFile(String uri) {
+    return cacheFile;
+  }
+
+  @Test
+  public void notModified() throws Exception {
+    load();
+    final RSSFeed feed = load();
+
+    assertEquals("Example Channel", feed.getTitle());
+    assertEquals(Arrays.asList(null, FeedServer.ETAG), server.conditions());
+  }
+
+  @Test
+  public void notModifiedFromFile() throws Exception {
+    load();
+    final long start = System.currentTimeMillis();
+    final RSSFeed feed = load();
+
+    // the feed is read from the cache file and gets the new expiry time
+    assertTrue(feed.getExpires() >= start + FeedServer.MAX_AGE_SECONDS * 1000L);
+  }
+
+  @Test
+  public void notModifiedFromMemory() throws Exception {
+    reader.setFeedCache(new RSSFeedCache(4));
+    final RSSFeed first = load();
+    final long expires = first.getExpires();
+    Thread.sleep(10);
+    final RSSFeed second = load();
+
+    // the shared feed is not written once it has been cached
+    assertSame(first, second);
+    assertEquals(expires, second.getExpires());
+    assertEquals(Arrays.asList(null, FeedServer.ETAG), server.conditions());
+  }
+
+  @Test
+  public void corruptCache() throws Exception {
+    load();
+    write(cacheFile, "<rss><channel><title>");
+    final RSSFeed feed = load();
+
+    // the full feed is requested again within the same load
+    assertEquals("Example Channel", feed.getTitle());
+    assertEquals(Arrays.asList(null, FeedServer.ETAG, null), server.conditions());
+  }
+
+  @Test
+  public void unreadableCache() throws Exception {
+    load();
+    assertTrue(cacheFile.delete());
+    assertTrue(cacheFile.mkdir());
+    final RSSFeed feed = load();
+
+    assertEquals("Example Channel", feed.getTitle());
+    assertEquals(Arrays.asList(null, FeedServer.ETAG, null), server.conditions());
+  }
+
+  private RSSFeed load() throws Exception {
+    final RSSFeed feed = reader.load(server.uri("rss.xml"), RSSReader.CONFIG_ONLINE_ONLY);
+
+    // the cache files are written in the background
+    final File validators = new File(directory, cacheFile.getName() + ".validators");
+    for (int i = 0; i < 100 && !validators.exists(); i++) {
+      Thread.sleep(10);
+    }
+    return feed;
+  }
+
+  private static void write(File file, String content) throws IOException {
+    final FileOutputStream stream = new FileOutputStream(file);
+    try {
+      stream.write(content.getBytes("UTF-8"));
+    } finally {
+      stream.close();
+    }
+  }
+
+  private static void delete(File file) {
+    final File[] files = file.listFiles();
+    if (files != null) {
+      for (File child : files) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+}
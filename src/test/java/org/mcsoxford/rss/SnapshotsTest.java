@@ -0,0 +1,124 @@
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the binary {@link Snapshots} of RSS feeds.
+ * 
+ * @author Mr Horn
+ */
+public class SnapshotsTest {
+
+  /**
+   * Fixture data
+   */
+  private RSSFeed feed;
+
+  @Before
+  public void setup() {
+    final InputStream stream = getClass().getClassLoader().getResourceAsStream("rssfeed.xml");
+    try {
+      feed = new RSSParser(new RSSConfig()).parse(stream);
+    } finally {
+      Resources.closeQuietly(stream);
+    }
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    final RSSFeed copy = Snapshots.read(ByteBuffer.wrap(write(feed)), new RSSConfig(), null);
+
+    assertEquals(feed.getTitle(), copy.getTitle());
+    assertEquals(feed.getLink(), copy.getLink());
+    assertEquals(feed.getDescription(), copy.getDescription());
+    assertEquals(feed.getPubDateTime(), copy.getPubDateTime());
+    assertEquals(feed.getLastBuildDateTime(), copy.getLastBuildDateTime());
+    assertEquals(feed.getTTL(), copy.getTTL());
+    assertEquals(feed.getItems().size(), copy.getItems().size());
+
+    for (int i = 0; i < feed.getItems().size(); i++) {
+      final RSSItem expected = feed.getItems().get(i);
+      final RSSItem actual = copy.getItems().get(i);
+      assertEquals(expected.getTitle(), actual.getTitle());
+      assertEquals(expected.getLink(), actual.getLink());
+      assertEquals(expected.getDescription(), actual.getDescription());
+      assertEquals(expected.getContent(), actual.getContent());
+      assertEquals(expected.getPubDate(), actual.getPubDate());
+      assertEquals(expected.getCategories(), actual.getCategories());
+      assertEquals(expected.getThumbnails(), actual.getThumbnails());
+      for (int j = 0; j < expected.getThumbnails().size(); j++) {
+        assertEquals(expected.getThumbnails().get(j).getHeight(), actual.getThumbnails().get(j).getHeight());
+        assertEquals(expected.getThumbnails().get(j).getWidth(), actual.getThumbnails().get(j).getWidth());
+      }
+    }
+  }
+
+  @Test
+  public void readStream() throws IOException {
+    final RSSFeed copy = Snapshots.read(new ByteArrayInputStream(write(feed)), new RSSConfig(), new RSSParseOptions(1, null));
+    assertTrue(copy.isTruncated());
+    assertEquals(1, copy.getItems().size());
+    assertEquals("News for November", copy.getItems().get(0).getTitle());
+  }
+
+  @Test
+  public void readExactlyMaxItems() throws IOException {
+    final RSSParseOptions options = new RSSParseOptions(feed.getItems().size(), null);
+    final InputStream stream = getClass().getClassLoader().getResourceAsStream("rssfeed.xml");
+    final RSSFeed parsed;
+    try {
+      parsed = new RSSParser(new RSSConfig()).parse(stream, options);
+    } finally {
+      Resources.closeQuietly(stream);
+    }
+    final RSSFeed copy = Snapshots.read(ByteBuffer.wrap(write(feed)), new RSSConfig(), options);
+
+    // both agree that a feed with exactly the maximum number of items is complete
+    assertFalse(parsed.isTruncated());
+    assertFalse(copy.isTruncated());
+    assertEquals(feed.getItems().size(), parsed.getItems().size());
+    assertEquals(feed.getItems().size(), copy.getItems().size());
+  }
+
+  @Test
+  public void readWithStringPool() throws IOException {
+    final RSSConfig config = new RSSConfig.Builder().stringPool(new RSSStringPool(64)).build();
+    final byte[] bytes = write(feed);
+    final RSSFeed first = Snapshots.read(ByteBuffer.wrap(bytes), config, null);
+    final RSSFeed second = Snapshots.read(ByteBuffer.wrap(bytes), config, null);
+
+    assertEquals("Daily news", first.getItems().get(1).getCategories().get(0));
+    assertSame(first.getItems().get(1).getCategories().get(0),
+        second.getItems().get(1).getCategories().get(0));
+  }
+
+  @Test(expected = IOException.class)
+  public void readTruncated() throws IOException {
+    final byte[] bytes = write(feed);
+    Snapshots.read(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length / 2)), new RSSConfig(), null);
+  }
+
+  @Test(expected = IOException.class)
+  public void readOtherVersion() throws IOException {
+    final byte[] bytes = write(feed);
+    bytes[4]++;
+    Snapshots.read(ByteBuffer.wrap(bytes), new RSSConfig(), null);
+  }
+
+  private static byte[] write(RSSFeed feed) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Snapshots.write(feed, out);
+    return out.toByteArray();
+  }
+
+}
@@ -0,0 +1,78 @@
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the input stream which copies a feed to its cache file.
+ * 
+ * @author Mr Horn
+ */
+public class TeeInputStreamTest {
+
+  private final byte[] source = bytes(10000);
+  private final ByteArrayOutputStream branch = new ByteArrayOutputStream();
+  private final TeeInputStream tee = new TeeInputStream(new ByteArrayInputStream(source), branch);
+
+  @Test
+  public void copy() throws IOException {
+    assertEquals(source[0], (byte) tee.read());
+    final byte[] buffer = new byte[100];
+    assertEquals(100, tee.read(buffer, 0, buffer.length));
+
+    assertEquals(101, branch.size());
+    assertArrayEquals(prefix(101), branch.toByteArray());
+  }
+
+  @Test
+  public void skip() throws IOException {
+    assertEquals(5000, tee.skip(5000));
+    assertEquals(source[5000], (byte) tee.read());
+
+    // skipped bytes are copied too
+    assertArrayEquals(prefix(5001), branch.toByteArray());
+  }
+
+  @Test
+  public void skipNothing() throws IOException {
+    assertEquals(0, tee.skip(0));
+    assertEquals(0, tee.skip(-1));
+    assertEquals(0, branch.size());
+  }
+
+  @Test
+  public void skipPastEnd() throws IOException {
+    assertEquals(source.length, tee.skip(Long.MAX_VALUE));
+    assertEquals(-1, tee.read());
+    assertArrayEquals(source, branch.toByteArray());
+  }
+
+  @Test
+  public void drain() throws IOException {
+    tee.read(new byte[10], 0, 10);
+    tee.close();
+    tee.drain();
+
+    assertArrayEquals(source, branch.toByteArray());
+  }
+
+  private byte[] prefix(int length) {
+    final byte[] prefix = new byte[length];
+    System.arraycopy(source, 0, prefix, 0, length);
+    return prefix;
+  }
+
+  private static byte[] bytes(int length) {
+    final byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) (i * 31);
+    }
+    return bytes;
+  }
+
+}
@@ -0,0 +1,85 @@
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that a load which stops after a number of items does not wait for the
+ * rest of the feed to download.
+ *
+ * @author Mr Horn
+ */
+public class TruncatedLoadTest implements RSSReader.RSSReaderCallbacks {
+
+  private FeedServer server;
+  private RSSReader reader;
+  private File directory;
+
+  /**
+   * Cache file of the feed, {@code null} for none
+   */
+  private File cacheFile;
+
+  @Before
+  public void setup() throws IOException {
+    directory = File.createTempFile("rss", "");
+    assertTrue(directory.delete());
+    assertTrue(directory.mkdir());
+
+    server = new FeedServer();
+    reader = new RSSReader();
+    reader.setCallbacks(this);
+  }
+
+  @After
+  public void teardown() {
+    reader.close();
+    server.stop();
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Override
+  public boolean onRequestNetworkState() {
+    return true;
+  }
+
+  @Override
+  public File onRequestCacheFile(String uri) {
+    return cacheFile;
+  }
+
+  @Test
+  public void abortWithoutCache() throws Exception {
+    assertTruncatedPromptly();
+  }
+
+  @Test
+  public void abortWhileCaching() throws Exception {
+    cacheFile = new File(directory, "feed.xml");
+    assertTruncatedPromptly();
+
+    // a partial document is not cached
+    assertFalse(cacheFile.exists());
+  }
+
+  private void assertTruncatedPromptly() throws Exception {
+    final long start = System.currentTimeMillis();
+    final RSSFeed feed = reader.load(server.uri("stall"), RSSReader.CONFIG_ONLINE_ONLY,
+        new RSSParseOptions(1, null));
+    final long elapsed = System.currentTimeMillis() - start;
+
+    assertTrue(feed.isTruncated());
+    assertEquals(1, feed.getItems().size());
+    assertTrue("waited " + elapsed + " ms for the rest of the feed", elapsed < FeedServer.STALL_MILLIS / 2);
+  }
+
+}